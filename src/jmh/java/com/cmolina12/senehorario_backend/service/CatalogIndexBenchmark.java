@@ -0,0 +1,76 @@
+package com.cmolina12.senehorario_backend.service;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Course search and autocomplete over an in-memory catalog, the path hit on every keystroke.
+ *
+ * The catalog has synthetic titles built from a small vocabulary, so short
+ * queries match many courses, and codes of 4 letters and 4 digits like the
+ * real ones. search returns every match in catalog order, suggest the 10 best.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CatalogIndexBenchmark {
+
+    private static final String[] WORDS = {
+        "CALCULO", "DIFERENCIAL", "INTEGRAL", "FISICA", "PROGRAMACION", "ORIENTADA", "OBJETOS", "DE", "LA", "ESTRUCTURAS",
+        "DATOS", "ALGEBRA", "LINEAL", "PROBABILIDAD", "ESTADISTICA", "INGENIERIA", "SISTEMAS", "CONTROL", "PRODUCCION", "I", "II",
+    };
+    private static final String[] PREFIXES = { "MATE", "ISIS", "FISI", "IIND", "MBIO", "ADMI", "ECON", "DERE", "LENG", "ARTE" };
+
+    @Param({ "2000" })
+    int courses;
+
+    @Param({ "CA", "CALC", "PROGRAMACION DE", "ISIS12" })
+    String query;
+
+    @Param({ "42" })
+    long seed;
+
+    private CatalogIndex index;
+
+    @Setup
+    public void buildIndex() {
+        Random random = new Random(seed);
+        String[] codes = new String[courses];
+        String[] titles = new String[courses];
+        for (int i = 0; i < courses; i++) {
+            codes[i] = PREFIXES[random.nextInt(PREFIXES.length)] + (1000 + random.nextInt(4000));
+            StringBuilder title = new StringBuilder(WORDS[random.nextInt(WORDS.length)]);
+            for (int w = 1 + random.nextInt(4); w > 0; w--) {
+                title.append(' ').append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            titles[i] = title.toString();
+        }
+        index = new CatalogIndex(codes, titles);
+    }
+
+    @Benchmark
+    public int[] search() {
+        return index.search(query);
+    }
+
+    @Benchmark
+    public List<Integer> suggest() {
+        return index.suggest(query, 10);
+    }
+}
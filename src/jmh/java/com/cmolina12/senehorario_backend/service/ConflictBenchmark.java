@@ -0,0 +1,87 @@
+package com.cmolina12.senehorario_backend.service;
+
+import com.cmolina12.senehorario_backend.domain.Section;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Pairwise conflict check between two sections, the innermost operation of the search.
+ *
+ * Every invocation checks the same PAIRS pairs of synthetic sections, and the
+ * score is the average time of one check. conflict walks the Meeting objects,
+ * packedConflict checks the packed form the solver compiles the sections into.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConflictBenchmark {
+
+    static final int PAIRS = 1_024;
+
+    @Param({ "1", "2", "3" })
+    int meetingsPerSection;
+
+    @Param({ "0.3", "0.6" })
+    double conflictDensity;
+
+    @Param({ "42" })
+    long seed;
+
+    private Section[] first;
+    private Section[] second;
+    private int[][] packedFirst;
+    private int[][] packedSecond;
+
+    @Setup
+    public void generateSections() {
+        List<List<Section>> candidates = SyntheticCatalog.candidates(seed, 2, PAIRS, meetingsPerSection, conflictDensity);
+        first = candidates.get(0).toArray(new Section[0]);
+        second = candidates.get(1).toArray(new Section[0]);
+        packedFirst = new int[PAIRS][];
+        packedSecond = new int[PAIRS][];
+        for (int i = 0; i < PAIRS; i++) {
+            packedFirst[i] = PackedMeetings.pack(first[i]);
+            packedSecond[i] = PackedMeetings.pack(second[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public int conflict() {
+        int conflicts = 0;
+        for (int i = 0; i < PAIRS; i++) {
+            if (ScheduleService.conflict(first[i], second[i])) {
+                conflicts++;
+            }
+        }
+        return conflicts;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public int packedConflict() {
+        int conflicts = 0;
+        for (int i = 0; i < PAIRS; i++) {
+            if (PackedMeetings.overlap(packedFirst[i], 0, packedFirst[i].length, packedSecond[i], 0, packedSecond[i].length)) {
+                conflicts++;
+            }
+        }
+        return conflicts;
+    }
+}
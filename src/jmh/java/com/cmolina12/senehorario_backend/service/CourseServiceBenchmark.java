@@ -0,0 +1,75 @@
+package com.cmolina12.senehorario_backend.service;
+
+import com.cmolina12.senehorario_backend.domain.Course;
+import com.cmolina12.senehorario_backend.models.ApiCourse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mapping of catalog API responses into domain courses.
+ *
+ * The fixtures in src/jmh/resources/fixtures have the exact shape of the
+ * catalog API responses. mapToDomain only measures the mapping, and
+ * parseAndMapToDomain adds the JSON parsing done for every API response.
+ * streamToDomain reads the same JSON straight into domain courses with
+ * CatalogStreamReader; run with -prof gc to compare the allocation per
+ * operation (gc.alloc.rate.norm) of both paths.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CourseServiceBenchmark {
+
+    @Param({ "calculo-diferencial.json", "ingenieria-industrial.json" })
+    String fixture;
+
+    private final CourseService courseService = new CourseService();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private byte[] json;
+    private ApiCourse[] raw;
+
+    @Setup
+    public void loadFixture() throws IOException {
+        try (InputStream in = CourseServiceBenchmark.class.getResourceAsStream("/fixtures/" + fixture)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Unknown fixture: " + fixture);
+            }
+            json = in.readAllBytes();
+        }
+        raw = objectMapper.readValue(json, ApiCourse[].class);
+    }
+
+    @Benchmark
+    public List<Course> mapToDomain() {
+        return courseService.toDomainCourses(raw);
+    }
+
+    @Benchmark
+    public List<Course> parseAndMapToDomain() throws IOException {
+        return courseService.toDomainCourses(objectMapper.readValue(json, ApiCourse[].class));
+    }
+
+    @Benchmark
+    public List<Course> streamToDomain() throws IOException {
+        return CatalogStreamReader.readCourses(new ByteArrayInputStream(json));
+    }
+}
@@ -0,0 +1,67 @@
+package com.cmolina12.senehorario_backend.service;
+
+import com.cmolina12.senehorario_backend.domain.Section;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Schedule generation over synthetic requests.
+ *
+ * Every search mode runs on the same generated candidates for a given set of
+ * parameters, so the modes can be compared side by side. Any parameter can be
+ * overridden from the command line, e.g. -p courses=8 -p conflictDensity=0.5.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScheduleServiceBenchmark {
+
+    @Param({ "5", "7" })
+    int courses;
+
+    @Param({ "4", "8" })
+    int sectionsPerCourse;
+
+    @Param({ "2" })
+    int meetingsPerSection;
+
+    @Param({ "0.3", "0.6" })
+    double conflictDensity;
+
+    @Param({ "BACKTRACKING", "FORWARD_CHECKING", "PARALLEL", "REFERENCE", "RANKED" })
+    SearchMode mode;
+
+    @Param({ "42" })
+    long seed;
+
+    @Param({ "100000" })
+    long maxResults; // Result cap of every search, the server default. RANKED only runs with one.
+
+    private final ScheduleService scheduleService = new ScheduleService();
+    private List<List<Section>> candidates;
+
+    @Setup
+    public void generateCandidates() {
+        candidates = SyntheticCatalog.candidates(seed, courses, sectionsPerCourse, meetingsPerSection, conflictDensity);
+    }
+
+    @Benchmark
+    public List<List<Section>> generateAllSchedules() {
+        return scheduleService.generateSchedules(candidates, mode, new SearchGuard(null, maxResults)).getSchedules();
+    }
+}
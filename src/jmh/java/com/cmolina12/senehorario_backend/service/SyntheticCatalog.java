@@ -0,0 +1,105 @@
+package com.cmolina12.senehorario_backend.service;
+
+import com.cmolina12.senehorario_backend.domain.Meeting;
+import com.cmolina12.senehorario_backend.domain.Section;
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates schedule requests of any shape for the benchmarks.
+ *
+ * Meetings fall on the usual Uniandes time blocks, Monday to Saturday. The
+ * conflict density controls how much of the week the sections share: at 0 the
+ * meetings are spread over every block of the week, and as it grows towards 1
+ * they are packed into fewer blocks, so more pairs of sections conflict. The
+ * same seed always gives the same request.
+ */
+
+final class SyntheticCatalog {
+
+    private static final String[][] BLOCKS = {
+        { "08:00", "09:20" },
+        { "09:30", "10:50" },
+        { "11:00", "12:20" },
+        { "12:30", "13:50" },
+        { "14:00", "15:20" },
+        { "15:30", "16:50" },
+        { "17:00", "18:20" },
+        { "18:30", "19:50" },
+    };
+    private static final DayOfWeek[] DAYS = {
+        DayOfWeek.MONDAY,
+        DayOfWeek.TUESDAY,
+        DayOfWeek.WEDNESDAY,
+        DayOfWeek.THURSDAY,
+        DayOfWeek.FRIDAY,
+        DayOfWeek.SATURDAY,
+    };
+    static final int WEEK_SLOTS = DAYS.length * BLOCKS.length; // Number of distinct (day, block) slots.
+
+    private SyntheticCatalog() {
+    }
+
+    /**
+     * Generates the candidate sections of a schedule request.
+     *
+     * @param seed Seed of the random generator.
+     * @param courses Number of courses.
+     * @param sectionsPerCourse Number of sections of every course.
+     * @param meetingsPerSection Number of weekly meetings of every section, at most WEEK_SLOTS.
+     * @param conflictDensity Between 0 and 1, the fraction of the week left out when placing meetings.
+     * @return the candidates, one list of sections per course.
+     */
+
+    static List<List<Section>> candidates(long seed, int courses, int sectionsPerCourse, int meetingsPerSection, double conflictDensity) {
+        if (meetingsPerSection < 1 || meetingsPerSection > WEEK_SLOTS) {
+            throw new IllegalArgumentException("Meetings per section must be between 1 and " + WEEK_SLOTS);
+        }
+
+        if (conflictDensity < 0 || conflictDensity > 1) {
+            throw new IllegalArgumentException("Conflict density must be between 0 and 1");
+        }
+
+        Random random = new Random(seed);
+        int usedSlots = Math.max(meetingsPerSection, (int) Math.round(WEEK_SLOTS * (1 - conflictDensity))); // Slots the meetings are drawn from.
+
+        List<List<Section>> candidates = new ArrayList<>(courses);
+        for (int c = 0; c < courses; c++) {
+            List<Section> sections = new ArrayList<>(sectionsPerCourse);
+            for (int s = 0; s < sectionsPerCourse; s++) {
+                sections.add(new Section(
+                    String.valueOf(10000 + c * 1000 + s),
+                    String.valueOf(s + 1),
+                    "202519",
+                    "1",
+                    "CAMPUS PRINCIPAL",
+                    meetings(random, usedSlots, meetingsPerSection),
+                    List.of("Prof. " + c + "." + s),
+                    random.nextInt(31),
+                    30
+                ));
+            }
+            candidates.add(sections);
+        }
+        return candidates;
+    }
+
+    // Distinct slots among the first usedSlots, so a section never conflicts with itself.
+    private static List<Meeting> meetings(Random random, int usedSlots, int count) {
+        List<Integer> slots = new ArrayList<>(usedSlots);
+        for (int slot = 0; slot < usedSlots; slot++) {
+            slots.add(slot);
+        }
+
+        List<Meeting> meetings = new ArrayList<>(count);
+        for (int m = 0; m < count; m++) {
+            int slot = slots.remove(random.nextInt(slots.size()));
+            String[] block = BLOCKS[slot % BLOCKS.length];
+            meetings.add(new Meeting(DAYS[slot / BLOCKS.length], LocalTime.parse(block[0]), LocalTime.parse(block[1]), "ML 101"));
+        }
+        return meetings;
+    }
+}
@@ -4,10 +4,12 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 @SpringBootApplication(exclude = {DataSourceAutoConfiguration.class})
+@EnableScheduling // Runs the periodic refresh of the catalog snapshot and the seat polls, each on its own thread (spring.task.scheduling.pool.size).
 public class SenehorarioBackendApplication {
 
     public static void main(String[] args) {
@@ -23,7 +25,8 @@ public class SenehorarioBackendApplication {
                 registry.addMapping("/**")
                         .allowedOrigins("http://localhost:4200", "https://cmolina.xyz", "https://cmolina12.github.io")
                         .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
-                        .allowedHeaders("*");
+                        .allowedHeaders("*")
+                        .exposedHeaders("X-Schedules-Complete", "X-Schedules-Truncation-Reason"); // Lets the frontend know when a schedule list was truncated
             }
         };
     }
@@ -0,0 +1,46 @@
+package com.cmolina12.senehorario_backend.config;
+
+import com.cmolina12.senehorario_backend.service.CatalogResponse;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class CacheConfig {
+
+    static final String CATALOG_SEARCH_CACHE = "catalog.search"; // Name of the cache in the metrics, e.g. cache.gets{cache=catalog.search,result=hit}.
+
+    /**
+     * Cache of the catalog API responses by normalized query, in front of CourseService.fetchRawSections.
+     * Entries are kept for the whole retention, well past the point CourseService considers them stale,
+     * so they can still be served when the API fails (see CourseService.fetchRawSections). The cache is
+     * bounded by the total number of sections it holds; Caffeine evicts by a mix of recency and frequency
+     * (W-TinyLFU), so popular queries stay cached.
+     *
+     * @param retention how long a response is kept, as the last known good data of its query.
+     * @param maxSections maximum number of sections held by all the cached responses together.
+     * @param meterRegistry registry where the hit, miss and eviction metrics are published.
+     * @return the cache.
+     */
+
+    @Bean
+    public Cache<String, CatalogResponse> catalogSearchCache(
+        @Value("${senehorario.catalog.cache.retention:24h}") Duration retention,
+        @Value("${senehorario.catalog.cache.max-sections:100000}") long maxSections,
+        MeterRegistry meterRegistry
+    ) {
+        Cache<String, CatalogResponse> cache = Caffeine.newBuilder()
+            .expireAfterWrite(retention)
+            .maximumWeight(maxSections)
+            .weigher((String query, CatalogResponse response) -> response.getSections().length + 1) // Roughly the memory of the response, empty responses still count.
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CATALOG_SEARCH_CACHE);
+        return cache;
+    }
+}
@@ -0,0 +1,99 @@
+package com.cmolina12.senehorario_backend.config;
+
+import java.io.IOException;
+import java.time.Duration;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Stops calling the catalog API for a while after it fails several times in a row, so the
+ * requests fail at once instead of each one waiting for the timeouts and retries, and the API
+ * gets a break to recover. After the break one trial request is let through: if it succeeds
+ * the calls resume, otherwise the break starts again.
+ *
+ * A failure is a request that could not be sent or read, or a 5xx response, after the retries.
+ * Rejected requests fail with an IOException, which the RestTemplate reports as a
+ * ResourceAccessException, like any other connection failure.
+ */
+
+class CircuitBreakerInterceptor implements ClientHttpRequestInterceptor {
+
+    enum State {
+        CLOSED, // Requests go through.
+        OPEN, // Requests are rejected until the break is over.
+        HALF_OPEN // One trial request is going through, the others are rejected.
+    }
+
+    private final int failureThreshold; // Failures in a row that open the circuit.
+    private final long openNanos; // Length of the break.
+
+    private State state = State.CLOSED; // Guarded by this.
+    private int failures; // Failures in a row while closed.
+    private long openedAt; // System.nanoTime() when the circuit opened.
+
+    CircuitBreakerInterceptor(int failureThreshold, Duration openDuration) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("The failure threshold must be at least 1");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        acquire();
+
+        ClientHttpResponse response;
+        try {
+            response = execution.execute(request, body);
+        } catch (IOException | RuntimeException e) {
+            onFailure();
+            throw e;
+        }
+
+        if (response.getStatusCode().is5xxServerError()) {
+            onFailure();
+        } else {
+            onSuccess(); // Client errors such as 404 still mean the API is up.
+        }
+        return response;
+    }
+
+    /**
+     * @return the state of the circuit.
+     */
+
+    synchronized State state() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+            return State.HALF_OPEN; // The next request is the trial one.
+        }
+        return state;
+    }
+
+    private synchronized void acquire() throws IOException {
+        if (state == State.CLOSED) {
+            return;
+        }
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+            state = State.HALF_OPEN; // This request is the trial one.
+            return;
+        }
+        throw new IOException("The catalog API is failing, requests are paused for a while (circuit " + state + ")");
+    }
+
+    private synchronized void onSuccess() {
+        state = State.CLOSED;
+        failures = 0;
+    }
+
+    private synchronized void onFailure() {
+        failures++;
+        if (state == State.HALF_OPEN || failures >= failureThreshold) {
+            state = State.OPEN; // A failed trial starts another break.
+            openedAt = System.nanoTime();
+            failures = 0;
+        }
+    }
+}
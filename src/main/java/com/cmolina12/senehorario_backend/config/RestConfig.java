@@ -1,14 +1,179 @@
 package com.cmolina12.senehorario_backend.config;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
 @Configuration
 public class RestConfig {
 
+    static final String CATALOG_API_CLIENT = "uniandes-api"; // Name of the client in the metrics, e.g. httpcomponents.httpclient.pool.total.connections{httpclient=uniandes-api}.
+
+    /**
+     * Pool of the connections to the catalog API. Connections are kept alive and reused, so only
+     * the first request to the API pays for the TCP and TLS handshakes.
+     *
+     * @param maxTotal maximum number of open connections.
+     * @param maxPerRoute maximum number of open connections to one host, in practice the API.
+     * @param connectTimeout how long establishing a connection may take.
+     * @param readTimeout how long the API may stay silent while answering.
+     * @param timeToLive how long a connection is reused before it is closed, so DNS changes are picked up.
+     * @param meterRegistry registry where the size of the pool is published.
+     * @return the pool.
+     */
+
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager catalogApiConnectionManager(
+        @Value("${uniandes.api.pool.max-total:50}") int maxTotal,
+        @Value("${uniandes.api.pool.max-per-route:20}") int maxPerRoute,
+        @Value("${uniandes.api.connect-timeout:2s}") Duration connectTimeout,
+        @Value("${uniandes.api.read-timeout:10s}") Duration readTimeout,
+        @Value("${uniandes.api.pool.time-to-live:5m}") Duration timeToLive,
+        MeterRegistry meterRegistry
+    ) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+            .setMaxConnTotal(maxTotal)
+            .setMaxConnPerRoute(maxPerRoute)
+            .setDefaultConnectionConfig(ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.of(connectTimeout))
+                .setSocketTimeout(Timeout.of(readTimeout))
+                .setTimeToLive(TimeValue.of(timeToLive))
+                .setValidateAfterInactivity(TimeValue.ofSeconds(2)) // Connections idle for a while are checked before being reused.
+                .build())
+            .build();
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, CATALOG_API_CLIENT).bindTo(meterRegistry);
+        return connectionManager;
+    }
+
+    /**
+     * HTTP client of the catalog API over the connection pool. Responses are requested and
+     * decompressed with gzip (the client does it by default), idle connections are closed in the
+     * background, and the client's own retries are off since RetryInterceptor does them.
+     *
+     * @param connectionManager the pool of connections.
+     * @param poolTimeout how long a request may wait for a free connection of the pool.
+     * @param readTimeout how long the API may stay silent while answering.
+     * @param idleTimeout how long a connection may stay unused in the pool.
+     * @return the client.
+     */
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient catalogApiHttpClient(
+        PoolingHttpClientConnectionManager connectionManager,
+        @Value("${uniandes.api.pool.acquire-timeout:2s}") Duration poolTimeout,
+        @Value("${uniandes.api.read-timeout:10s}") Duration readTimeout,
+        @Value("${uniandes.api.pool.idle-timeout:30s}") Duration idleTimeout
+    ) {
+        return HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.of(poolTimeout))
+                .setResponseTimeout(Timeout.of(readTimeout))
+                .build())
+            .evictExpiredConnections()
+            .evictIdleConnections(TimeValue.of(idleTimeout))
+            .disableAutomaticRetries()
+            .build();
+    }
+
+    /**
+     * Circuit breaker of the requests to the catalog API, see CircuitBreakerInterceptor. Its state
+     * is published as the uniandes.api.circuit.state metric: 0 closed, 1 open, 2 half open.
+     *
+     * @param failureThreshold failed requests in a row that open the circuit.
+     * @param openDuration how long the requests are paused once the circuit opens.
+     * @param meterRegistry registry where the state is published.
+     * @return the circuit breaker.
+     */
+
+    @Bean
+    CircuitBreakerInterceptor catalogApiCircuitBreaker(
+        @Value("${uniandes.api.circuit.failure-threshold:5}") int failureThreshold,
+        @Value("${uniandes.api.circuit.open-duration:30s}") Duration openDuration,
+        MeterRegistry meterRegistry
+    ) {
+        CircuitBreakerInterceptor circuitBreaker = new CircuitBreakerInterceptor(failureThreshold, openDuration);
+        Gauge.builder("uniandes.api.circuit.state", circuitBreaker, breaker -> breaker.state().ordinal())
+            .description("State of the circuit breaker of the catalog API: 0 closed, 1 open, 2 half open")
+            .register(meterRegistry);
+        return circuitBreaker;
+    }
+
     @Bean // The purpose of this bean is to create a RestTemplate instance that can be used to make HTTP requests, the idea is to use it in the tests to mock the responses from the external API.
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(
+        RestTemplateBuilder restTemplateBuilder, // Adds the http.client.requests metrics of every request.
+        CloseableHttpClient catalogApiHttpClient,
+        CircuitBreakerInterceptor catalogApiCircuitBreaker,
+        @Value("${uniandes.api.retry.max-attempts:3}") int maxAttempts,
+        @Value("${uniandes.api.retry.initial-backoff:200ms}") Duration initialBackoff,
+        @Value("${uniandes.api.retry.max-backoff:2s}") Duration maxBackoff,
+        MeterRegistry meterRegistry
+    ) {
+        Counter retries = Counter.builder("uniandes.api.retries")
+            .description("Requests to the catalog API sent again after a failure")
+            .register(meterRegistry);
+
+        return restTemplateBuilder
+            .requestFactory(() -> new HttpComponentsClientHttpRequestFactory(catalogApiHttpClient))
+            .additionalInterceptors(
+                catalogApiCircuitBreaker, // Sees the outcome of the request once the retries are over.
+                new RetryInterceptor(maxAttempts, initialBackoff, maxBackoff, retries) // Last, so every attempt sends a new request.
+            )
+            .build();
+    }
+
+    @Bean(destroyMethod = "shutdownNow") // Threads used to fetch several courses from the API at the same time, so a slow course does not delay the others.
+    public ExecutorService courseFetchExecutor(@Value("${uniandes.api.max-concurrent-requests:8}") int maxConcurrentRequests) {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(maxConcurrentRequests, task -> {
+            Thread thread = new Thread(task, "course-fetch-" + count.incrementAndGet());
+            thread.setDaemon(true); // Never keeps the application alive on its own.
+            return thread;
+        });
+    }
+
+    /**
+     * Threads that refresh stale cached responses in the background, apart from courseFetchExecutor so
+     * the requests waiting for their courses never queue behind refreshes. When the queue is full the
+     * refresh is rejected, the stale response is served as is and a later caller tries again.
+     *
+     * @param threads number of refreshes running at the same time.
+     * @param queueSize refreshes waiting for a thread.
+     * @return the executor.
+     */
+
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService catalogRefreshExecutor(
+        @Value("${senehorario.catalog.cache.refresh-threads:2}") int threads,
+        @Value("${senehorario.catalog.cache.refresh-queue:32}") int queueSize
+    ) {
+        AtomicInteger count = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(queueSize), task -> {
+            Thread thread = new Thread(task, "catalog-refresh-" + count.incrementAndGet());
+            thread.setDaemon(true); // Never keeps the application alive on its own.
+            return thread;
+        }); // Rejects with RejectedExecutionException when the queue is full.
     }
 }
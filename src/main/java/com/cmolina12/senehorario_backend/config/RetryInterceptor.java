@@ -0,0 +1,83 @@
+package com.cmolina12.senehorario_backend.config;
+
+import io.micrometer.core.instrument.Counter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Retries the requests to the catalog API that fail in a way worth trying again: the connection
+ * failed or timed out, or the API answered 429 or 5xx. Only idempotent methods are retried, a
+ * bounded number of times, waiting an exponential backoff with full jitter between attempts so
+ * the clients that failed together do not come back together.
+ *
+ * It must be the last interceptor of the RestTemplate, so every attempt sends a new request.
+ */
+
+class RetryInterceptor implements ClientHttpRequestInterceptor {
+
+    private static final Set<HttpMethod> IDEMPOTENT = Set.of(HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS);
+
+    private final int maxAttempts; // Attempts in total, the first one included.
+    private final Duration initialBackoff; // Upper bound of the wait before the second attempt, doubled for each following one.
+    private final Duration maxBackoff; // Upper bound of any wait.
+    private final Counter retries; // Attempts after the first one, published as a metric.
+
+    RetryInterceptor(int maxAttempts, Duration initialBackoff, Duration maxBackoff, Counter retries) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("At least one attempt is required");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.retries = retries;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        int attempts = IDEMPOTENT.contains(request.getMethod()) ? maxAttempts : 1;
+
+        for (int attempt = 1; ; attempt++) {
+            ClientHttpResponse response;
+            try {
+                response = execution.execute(request, body);
+            } catch (IOException e) {
+                if (attempt >= attempts) {
+                    throw e; // Out of attempts, the RestTemplate reports it as a ResourceAccessException.
+                }
+                backoff(attempt);
+                continue;
+            }
+
+            if (attempt >= attempts || !isRetryable(response.getStatusCode())) {
+                return response;
+            }
+            response.close(); // Gives the connection back to the pool before waiting.
+            backoff(attempt);
+        }
+    }
+
+    private static boolean isRetryable(HttpStatusCode status) {
+        return status.is5xxServerError() || status.value() == 429;
+    }
+
+    // Waits a random time between zero and the exponential bound of the attempt.
+    private void backoff(int attempt) throws IOException {
+        retries.increment();
+        long bound = Math.min(maxBackoff.toMillis(), initialBackoff.toMillis() << Math.min(attempt - 1, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(bound + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry the request");
+        }
+    }
+}
@@ -4,15 +4,21 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.cmolina12.senehorario_backend.domain.Course;
+import com.cmolina12.senehorario_backend.domain.CourseSuggestion;
 import com.cmolina12.senehorario_backend.domain.Section;
 import com.cmolina12.senehorario_backend.models.ApiCourse;
 import com.cmolina12.senehorario_backend.service.CourseService;
+import com.cmolina12.senehorario_backend.service.InvalidRequestException;
+import com.cmolina12.senehorario_backend.service.SeatWatchService;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List; // Importing List to handle collections of courses.
 
@@ -24,6 +30,9 @@ public class CourseController {
     @Autowired
     private CourseService courseService; // courseService is an instance of CourseService, which is used to fetch course data from the API.
 
+    @Autowired
+    private SeatWatchService seatWatchService; // Pushes the seats of the watched sections while they change.
+
     /**
      * Fetches courses based on the provided name input.
      * 
@@ -76,6 +85,50 @@ public class CourseController {
         }
         return ResponseEntity.ok(sections);
     }
-    
 
+    /**
+     * Suggests courses while the user types, matching the code prefix or any part of the title, ignoring case and accents.
+     * 
+     * @param query the text typed so far, e.g. "calc" or "isis12".
+     * @param limit the maximum number of suggestions, 10 by default and never more than 50.
+     * @return a ResponseEntity containing the suggested courses, best match first.
+     */
+
+    @GetMapping("/suggest")
+    public ResponseEntity<List<CourseSuggestion>> suggestCourses(
+        @RequestParam("q") String query,
+        @RequestParam(value = "limit", defaultValue = "10") int limit
+    ) {
+        return ResponseEntity.ok(courseService.suggestCourses(query, limit));
+    }
+
+    /**
+     * Streams the available seats of some sections as Server-Sent Events, instead of searching the catalog again and again.
+     * The first "seats" event has every watched section, each later one only the sections whose seats changed.
+     * 
+     * @param codes the course codes to watch, e.g. ?code=ISIS1204&code=MATE1203.
+     * @param nrcs the NRCs to watch among those courses, e.g. ?nrc=20001. Every section of the courses if missing.
+     * @return the event stream.
+     */
+
+    @GetMapping(value = "/seats/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamSeats(
+        @RequestParam("code") List<String> codes,
+        @RequestParam(value = "nrc", required = false) List<String> nrcs
+    ) {
+        return seatWatchService.watch(codes, nrcs);
+    }
+
+    /**
+     * Maps invalid parameters (for example a non-positive limit) to a 400 Bad Request response.
+     * Other IllegalArgumentExceptions, e.g. malformed data from the catalog API, stay server errors.
+     * 
+     * @param e the exception thrown by the service.
+     * @return a 400 response with the reason.
+     */
+
+    @ExceptionHandler(InvalidRequestException.class)
+    public ResponseEntity<String> handleInvalidRequest(InvalidRequestException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
 }
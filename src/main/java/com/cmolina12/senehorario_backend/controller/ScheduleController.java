@@ -1,15 +1,38 @@
 package com.cmolina12.senehorario_backend.controller;
 
+import com.cmolina12.senehorario_backend.domain.CompactScheduleResult;
+import com.cmolina12.senehorario_backend.domain.GroupedScheduleResult;
+import com.cmolina12.senehorario_backend.domain.ScheduleConstraints;
+import com.cmolina12.senehorario_backend.domain.SchedulePage;
+import com.cmolina12.senehorario_backend.domain.ScheduleResult;
 import com.cmolina12.senehorario_backend.domain.Section;
+import com.cmolina12.senehorario_backend.domain.TruncationReason;
+import com.cmolina12.senehorario_backend.service.CourseService;
+import com.cmolina12.senehorario_backend.service.InvalidRequestException;
+import com.cmolina12.senehorario_backend.service.RankingCriterion;
 import com.cmolina12.senehorario_backend.service.ScheduleService;
+import com.cmolina12.senehorario_backend.service.SearchGuard;
+import com.cmolina12.senehorario_backend.service.SearchMode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.util.ArrayList; // Importing ArrayList to initialize an empty list of schedules if no schedules are generated.
+import java.util.LinkedHashMap;
 import java.util.List; // Importing List to handle collections of sections in the schedule.
+import java.util.Map;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api/schedules")
@@ -19,23 +42,270 @@ public class ScheduleController {
     @Autowired
     private ScheduleService scheduleService; // scheduleService is an instance of ScheduleService, which is used to generate schedules based on course sections.
 
+    @Autowired
+    private CourseService courseService; // courseService is used to fetch the sections of the courses requested by code.
+
+    @Autowired
+    private ObjectMapper objectMapper; // objectMapper is the application's JSON mapper, used to write each streamed schedule.
+
+    @Value("${senehorario.schedules.time-budget:10s}")
+    private Duration timeBudget; // Maximum time a single request may spend searching.
+
+    @Value("${senehorario.schedules.max-results:100000}")
+    private long maxResults; // Maximum number of schedules a single request may return.
+
+    static final String COMPLETE_HEADER = "X-Schedules-Complete"; // "true" if every valid schedule was returned.
+    static final String TRUNCATION_HEADER = "X-Schedules-Truncation-Reason"; // Why the list was truncated, only when it was.
+
+    private static final long STREAM_FLUSH_INTERVAL_NANOS = 100_000_000L; // Streamed schedules are flushed at least every 100 ms.
+
     /**
      * Generates all possible schedules based on the provided list of lists of Section objects.
+     * The search is bounded by the configured time budget and result cap; when it is cut short the
+     * schedules found so far are returned and the X-Schedules-Complete header is false, with
+     * X-Schedules-Truncation-Reason telling why.
      *
      * @param candidates a list of lists of Section objects representing the course sections to consider for schedule generation.
+     * @param constraints optional filters every section must satisfy (notBefore, notAfter, freeDays, campuses, withSeats, blocked).
+     * @param mode the search strategy to use, the configured senehorario.schedules.mode (BACKTRACKING) by default.
+     * @param requestedMax the maximum number of schedules wanted by the client, capped by the server limit.
      * @return a list of lists of Section objects representing all possible schedules generated by the ScheduleService.
      */
 
     @PostMapping
     public ResponseEntity<List<List<Section>>> getSchedules(
-        @RequestBody List<List<Section>> candidates
+        @RequestBody List<List<Section>> candidates,
+        ScheduleConstraints constraints,
+        @RequestParam(value = "mode", defaultValue = "${senehorario.schedules.mode:BACKTRACKING}") SearchMode mode,
+        @RequestParam(value = "maxResults", required = false) Long requestedMax
     ) {
-        List<List<Section>> schedules = scheduleService.generateAllSchedules(
-            candidates
+        ScheduleResult result = scheduleService.generateSchedules(
+            candidates,
+            constraints,
+            mode,
+            newGuard(requestedMax)
         ); // This method handles POST requests to /api/schedule, taking a list of lists of Section objects as input and returning all possible schedules generated by the ScheduleService.
+        return scheduleResponse(result);
+    }
+
+    /**
+     * Generates all possible schedules for the given course codes in a single round trip: the sections of every
+     * course are fetched from the catalog at the same time and fed directly into the search, so the client does
+     * not have to fetch each course and post its sections back. Bounded and marked like POST /api/schedules.
+     *
+     * @param codes the course codes, e.g. ISIS1204,MATE1203.
+     * @param constraints optional filters every section must satisfy (notBefore, notAfter, freeDays, campuses, withSeats, blocked).
+     * @param mode the search strategy to use, the configured senehorario.schedules.mode (BACKTRACKING) by default.
+     * @param requestedMax the maximum number of schedules wanted by the client, capped by the server limit.
+     * @return a list of lists of Section objects representing all possible schedules, one section per course in the order of the codes.
+     */
+
+    @RequestMapping(value = "/by-codes", method = { RequestMethod.GET, RequestMethod.POST })
+    public ResponseEntity<List<List<Section>>> getSchedulesByCodes(
+        @RequestParam("codes") List<String> codes,
+        ScheduleConstraints constraints,
+        @RequestParam(value = "mode", defaultValue = "${senehorario.schedules.mode:BACKTRACKING}") SearchMode mode,
+        @RequestParam(value = "maxResults", required = false) Long requestedMax
+    ) {
+        List<List<Section>> candidates = courseService.findSectionsByCourseCodes(codes); // All the courses are fetched concurrently.
+        return scheduleResponse(scheduleService.generateSchedules(candidates, constraints, mode, newGuard(requestedMax)));
+    }
+
+    // Builds the response of a bounded search: the schedules found, and the headers telling whether the list is complete.
+    private ResponseEntity<List<List<Section>>> scheduleResponse(ScheduleResult result) {
+        List<List<Section>> schedules = result.getSchedules();
         if (schedules == null) {
             schedules = new ArrayList<>(); // If no schedules are generated, it initializes an empty list to avoid returning null.
         }
-        return ResponseEntity.ok(schedules); // If schedules are generated, it returns a 200 OK response with the list of schedules.
+        return boundedResponse(result.getTruncationReason()).body(schedules); // It returns a 200 OK response with the list of schedules, complete or not.
+    }
+
+    // Starts a 200 response with the headers telling whether the bounded search finished, and why not.
+    private ResponseEntity.BodyBuilder boundedResponse(TruncationReason truncationReason) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().header(COMPLETE_HEADER, String.valueOf(truncationReason == null));
+        if (truncationReason != null) {
+            response.header(TRUNCATION_HEADER, truncationReason.name());
+        }
+        return response;
+    }
+
+    /**
+     * Streams all possible schedules as newline-delimited JSON (one schedule per line) while the search finds them.
+     * The schedules are never held in memory, and the search stops if a write fails because the client went away.
+     * The last line is a status object, e.g. {"complete":false,"truncationReason":"DEADLINE"}.
+     * The RANKED mode is rejected, since it only knows the best schedules once the search is done.
+     *
+     * @param candidates a list of lists of Section objects representing the course sections to consider for schedule generation.
+     * @param constraints optional filters every section must satisfy (notBefore, notAfter, freeDays, campuses, withSeats, blocked).
+     * @param mode the search strategy to use, the configured senehorario.schedules.mode (BACKTRACKING) by default.
+     * @param requestedMax the maximum number of schedules wanted by the client, capped by the server limit.
+     * @return a streaming body that writes each schedule as a JSON array of sections followed by a newline.
+     */
+
+    @PostMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamSchedules(
+        @RequestBody List<List<Section>> candidates,
+        ScheduleConstraints constraints,
+        @RequestParam(value = "mode", defaultValue = "${senehorario.schedules.mode:BACKTRACKING}") SearchMode mode,
+        @RequestParam(value = "maxResults", required = false) Long requestedMax
+    ) {
+        if (mode == SearchMode.RANKED) {
+            throw new InvalidRequestException("The RANKED mode cannot be streamed");
+        }
+
+        SearchGuard guard = newGuard(requestedMax);
+        StreamingResponseBody body = out -> {
+            long[] lastFlush = { 0L }; // Zero so the first schedule is flushed right away.
+            try {
+                scheduleService.forEachSchedule(candidates, constraints, mode, guard, schedule -> {
+                    try {
+                        out.write(objectMapper.writeValueAsBytes(schedule));
+                        out.write('\n');
+
+                        long now = System.nanoTime();
+                        if (lastFlush[0] == 0L || now - lastFlush[0] >= STREAM_FLUSH_INTERVAL_NANOS) {
+                            out.flush();
+                            lastFlush[0] = now;
+                        }
+                    } catch (IOException e) {
+                        guard.cancel();
+                        throw new UncheckedIOException(e); // The client went away, this stops the search.
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            Map<String, Object> status = new LinkedHashMap<>();
+            status.put("complete", guard.getTruncationReason() == null);
+            status.put("truncationReason", guard.getTruncationReason());
+            out.write(objectMapper.writeValueAsBytes(status));
+            out.write('\n');
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    /**
+     * Generates all possible schedules in the compact format: a table with every candidate section once,
+     * and each schedule as the indices of its sections in that table. Bounded like the default format.
+     *
+     * @param candidates a list of lists of Section objects representing the course sections to consider for schedule generation.
+     * @param constraints optional filters every section must satisfy (notBefore, notAfter, freeDays, campuses, withSeats, blocked).
+     * @param mode the search strategy to use, the configured senehorario.schedules.mode (BACKTRACKING) by default.
+     * @param requestedMax the maximum number of schedules wanted by the client, capped by the server limit.
+     * @return the sections table, the schedules as indices into it, and whether the list is complete.
+     */
+
+    @PostMapping(params = { "format=compact", "!limit" })
+    public ResponseEntity<CompactScheduleResult> getCompactSchedules(
+        @RequestBody List<List<Section>> candidates,
+        ScheduleConstraints constraints,
+        @RequestParam(value = "mode", defaultValue = "${senehorario.schedules.mode:BACKTRACKING}") SearchMode mode,
+        @RequestParam(value = "maxResults", required = false) Long requestedMax
+    ) {
+        return ResponseEntity.ok(scheduleService.generateCompactSchedules(candidates, constraints, mode, newGuard(requestedMax)));
+    }
+
+    /**
+     * Generates all possible schedules with the sections that meet at the same times grouped together:
+     * each schedule lists, for every course, the sections that can replace each other (e.g. any of NRC 11060/11062).
+     * Bounded like the default format, with the result cap counting grouped schedules.
+     *
+     * @param candidates a list of lists of Section objects representing the course sections to consider for schedule generation.
+     * @param constraints optional filters every section must satisfy (notBefore, notAfter, freeDays, campuses, withSeats, blocked).
+     * @param mode the search strategy to use, the configured senehorario.schedules.mode (BACKTRACKING) by default.
+     * @param requestedMax the maximum number of grouped schedules wanted by the client, capped by the server limit.
+     * @return the grouped schedules, and whether the list is complete.
+     */
+
+    @PostMapping(params = { "format=grouped", "!limit" })
+    public ResponseEntity<GroupedScheduleResult> getGroupedSchedules(
+        @RequestBody List<List<Section>> candidates,
+        ScheduleConstraints constraints,
+        @RequestParam(value = "mode", defaultValue = "${senehorario.schedules.mode:BACKTRACKING}") SearchMode mode,
+        @RequestParam(value = "maxResults", required = false) Long requestedMax
+    ) {
+        return ResponseEntity.ok(scheduleService.generateGroupedSchedules(candidates, constraints, mode, newGuard(requestedMax)));
+    }
+
+    /**
+     * Returns one page of schedules. The cursor of the response is passed back to get the next page,
+     * and the search resumes where the previous page stopped, so each request only pays for its own page.
+     * The search is bounded by the configured time budget; a page cut short is marked like the compact
+     * format, and its cursor resumes right after its last schedule.
+     *
+     * @param candidates a list of lists of Section objects representing the course sections to consider for schedule generation.
+     * @param constraints optional filters every section must satisfy (notBefore, notAfter, freeDays, campuses, withSeats, blocked).
+     * @param limit the maximum number of schedules in the page.
+     * @param cursor the cursor returned with the previous page, absent for the first page.
+     * @return the schedules of the page and the cursor of the next one, which is null after the last page.
+     */
+
+    @PostMapping(params = "limit")
+    public ResponseEntity<SchedulePage> getSchedulePage(
+        @RequestBody List<List<Section>> candidates,
+        ScheduleConstraints constraints,
+        @RequestParam("limit") int limit,
+        @RequestParam(value = "cursor", required = false) String cursor
+    ) {
+        return ResponseEntity.ok(scheduleService.generateSchedulePage(candidates, constraints, limit, cursor, newGuard(null)));
+    }
+
+    /**
+     * Counts all possible schedules without generating them. The count is bounded by the configured
+     * time budget; when it is cut short the number counted so far is returned (a lower bound) and the
+     * headers are set like POST /api/schedules.
+     *
+     * @param candidates a list of lists of Section objects representing the course sections to consider for schedule generation.
+     * @param constraints optional filters every section must satisfy (notBefore, notAfter, freeDays, campuses, withSeats, blocked).
+     * @return the number of valid schedules.
+     */
+
+    @PostMapping("/count")
+    public ResponseEntity<Long> countSchedules(@RequestBody List<List<Section>> candidates, ScheduleConstraints constraints) {
+        SearchGuard guard = newGuard(null);
+        long count = scheduleService.countSchedules(candidates, constraints, guard);
+        return boundedResponse(guard.getTruncationReason()).body(count);
+    }
+
+    /**
+     * Returns the best schedules according to the ranking criteria. The search is bounded by the configured
+     * time budget; when it is cut short the best of the schedules found so far are returned and the headers
+     * are set like POST /api/schedules.
+     *
+     * @param candidates a list of lists of Section objects representing the course sections to consider for schedule generation.
+     * @param constraints optional filters every section must satisfy (notBefore, notAfter, freeDays, campuses, withSeats, blocked).
+     * @param k the maximum number of schedules to return, 10 by default.
+     * @param criteria the ranking criteria in priority order, e.g. MOST_FREE_DAYS,FEWEST_GAPS.
+     * @return the best schedules, best first.
+     */
+
+    @PostMapping("/ranked")
+    public ResponseEntity<List<List<Section>>> getTopSchedules(
+        @RequestBody List<List<Section>> candidates,
+        ScheduleConstraints constraints,
+        @RequestParam(value = "k", defaultValue = "10") int k,
+        @RequestParam("criteria") List<RankingCriterion> criteria
+    ) {
+        return scheduleResponse(scheduleService.generateTopSchedules(candidates, constraints, k, criteria, newGuard(null)));
+    }
+
+    // Creates the guard of a request: the configured time budget, and the smaller of the client and server result caps.
+    private SearchGuard newGuard(Long requestedMax) {
+        long cap = requestedMax == null ? maxResults : Math.min(requestedMax, maxResults);
+        return new SearchGuard(timeBudget, cap);
+    }
+
+    /**
+     * Maps invalid parameters (for example a malformed cursor) to a 400 Bad Request response.
+     * Other IllegalArgumentExceptions, e.g. malformed data from the catalog API, stay server errors.
+     *
+     * @param e the exception thrown by the service.
+     * @return a 400 response with the reason.
+     */
+
+    @ExceptionHandler(InvalidRequestException.class)
+    public ResponseEntity<String> handleInvalidRequest(InvalidRequestException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
     }
 }
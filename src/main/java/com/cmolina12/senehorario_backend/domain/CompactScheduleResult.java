@@ -0,0 +1,26 @@
+package com.cmolina12.senehorario_backend.domain;
+
+import java.util.List;
+import lombok.Getter;
+
+public class CompactScheduleResult {
+
+    @Getter
+    private final List<Section> sections; // Every candidate section once, course after course in the posted order
+
+    @Getter
+    private final List<int[]> schedules; // Each schedule as the indices of its sections in the sections table, one per course
+
+    @Getter
+    private final boolean complete; // True if every valid schedule is in the list
+
+    @Getter
+    private final TruncationReason truncationReason; // Why the search stopped early, null when complete
+
+    public CompactScheduleResult(List<Section> sections, List<int[]> schedules, TruncationReason truncationReason) {
+        this.sections = sections;
+        this.schedules = schedules;
+        this.complete = truncationReason == null;
+        this.truncationReason = truncationReason;
+    }
+}
@@ -0,0 +1,34 @@
+package com.cmolina12.senehorario_backend.domain;
+
+import lombok.Getter;
+
+public class CourseSuggestion {
+
+    @Getter
+    private final String code; // The course code, e.g. "MATE1203"
+
+    @Getter
+    private final String title; // The course name, e.g. "CALCULO DIFERENCIAL"
+
+    @Getter
+    private final int credits; // The number of credits of the course
+
+    @Getter
+    private final int sections; // The number of sections offered this term
+
+    public CourseSuggestion(String code, String title, int credits, int sections) {
+        this.code = code;
+        this.title = title;
+        this.credits = credits;
+        this.sections = sections;
+    }
+
+    /**
+     * @param course the course to suggest.
+     * @return the suggestion of the course, without its sections.
+     */
+
+    public static CourseSuggestion of(Course course) {
+        return new CourseSuggestion(course.getCode(), course.getTitle(), course.getCredits(), course.getSections().size());
+    }
+}
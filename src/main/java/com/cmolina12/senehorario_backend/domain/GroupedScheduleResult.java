@@ -0,0 +1,22 @@
+package com.cmolina12.senehorario_backend.domain;
+
+import java.util.List;
+import lombok.Getter;
+
+public class GroupedScheduleResult {
+
+    @Getter
+    private final List<List<List<Section>>> schedules; // Each schedule has, for every course, the sections that meet at the same times and can replace each other
+
+    @Getter
+    private final boolean complete; // True if every valid schedule is in the list
+
+    @Getter
+    private final TruncationReason truncationReason; // Why the search stopped early, null when complete
+
+    public GroupedScheduleResult(List<List<List<Section>>> schedules, TruncationReason truncationReason) {
+        this.schedules = schedules;
+        this.complete = truncationReason == null;
+        this.truncationReason = truncationReason;
+    }
+}
@@ -0,0 +1,52 @@
+package com.cmolina12.senehorario_backend.domain;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.List;
+import lombok.Getter;
+import org.springframework.format.annotation.DateTimeFormat;
+
+public class ScheduleConstraints {
+
+    @Getter
+    private final LocalTime notBefore; // No meeting may start before this time, e.g. 08:00
+
+    @Getter
+    private final LocalTime notAfter; // No meeting may end after this time, e.g. 18:00
+
+    @Getter
+    private final List<DayOfWeek> freeDays; // Days without meetings, e.g. FRIDAY
+
+    @Getter
+    private final List<String> campuses; // Campuses the sections must be on, any campus when empty
+
+    @Getter
+    private final boolean withSeats; // Only sections with available seats
+
+    @Getter
+    private final List<String> blocked; // Weekly windows without meetings, e.g. "MONDAY 12:00-14:00"
+
+    public ScheduleConstraints(
+        @DateTimeFormat(iso = DateTimeFormat.ISO.TIME) LocalTime notBefore,
+        @DateTimeFormat(iso = DateTimeFormat.ISO.TIME) LocalTime notAfter,
+        List<DayOfWeek> freeDays,
+        List<String> campuses,
+        Boolean withSeats,
+        List<String> blocked
+    ) {
+        this.notBefore = notBefore;
+        this.notAfter = notAfter;
+        this.freeDays = freeDays == null ? List.of() : freeDays;
+        this.campuses = campuses == null ? List.of() : campuses;
+        this.withSeats = withSeats != null && withSeats;
+        this.blocked = blocked == null ? List.of() : blocked;
+    }
+
+    /**
+     * @return constraints that allow every section.
+     */
+
+    public static ScheduleConstraints none() {
+        return new ScheduleConstraints(null, null, null, null, false, null);
+    }
+}
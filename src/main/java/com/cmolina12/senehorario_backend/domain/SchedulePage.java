@@ -0,0 +1,26 @@
+package com.cmolina12.senehorario_backend.domain;
+
+import java.util.List;
+import lombok.Getter;
+
+public class SchedulePage {
+
+    @Getter
+    private final List<List<Section>> schedules; // Schedules of this page, in search order
+
+    @Getter
+    private final String nextCursor; // Opaque cursor of the next page, null when there are no more schedules
+
+    @Getter
+    private final boolean complete; // True if the page holds every schedule up to the next cursor
+
+    @Getter
+    private final TruncationReason truncationReason; // Why the page stopped early, null when complete
+
+    public SchedulePage(List<List<Section>> schedules, String nextCursor, TruncationReason truncationReason) {
+        this.schedules = schedules;
+        this.nextCursor = nextCursor;
+        this.complete = truncationReason == null;
+        this.truncationReason = truncationReason;
+    }
+}
@@ -0,0 +1,22 @@
+package com.cmolina12.senehorario_backend.domain;
+
+import java.util.List;
+import lombok.Getter;
+
+public class ScheduleResult {
+
+    @Getter
+    private final List<List<Section>> schedules; // Schedules found before the search finished or was stopped
+
+    @Getter
+    private final boolean complete; // True if every valid schedule is in the list
+
+    @Getter
+    private final TruncationReason truncationReason; // Why the search stopped early, null when complete
+
+    public ScheduleResult(List<List<Section>> schedules, TruncationReason truncationReason) {
+        this.schedules = schedules;
+        this.complete = truncationReason == null;
+        this.truncationReason = truncationReason;
+    }
+}
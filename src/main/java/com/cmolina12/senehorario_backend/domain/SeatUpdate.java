@@ -0,0 +1,29 @@
+package com.cmolina12.senehorario_backend.domain;
+
+import lombok.Getter;
+
+public class SeatUpdate {
+
+    @Getter
+    private final String code; // The course code, e.g. "ISIS1204"
+
+    @Getter
+    private final String nrc; // The section NRC, e.g. "20001"
+
+    @Getter
+    private final Integer previousSeats; // Available seats last sent to the client, null in the first update
+
+    @Getter
+    private final int availableSeats; // Available seats now
+
+    @Getter
+    private final int totalSeats; // Total seats of the section
+
+    public SeatUpdate(String code, String nrc, Integer previousSeats, int availableSeats, int totalSeats) {
+        this.code = code;
+        this.nrc = nrc;
+        this.previousSeats = previousSeats;
+        this.availableSeats = availableSeats;
+        this.totalSeats = totalSeats;
+    }
+}
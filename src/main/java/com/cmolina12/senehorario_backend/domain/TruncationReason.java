@@ -0,0 +1,7 @@
+package com.cmolina12.senehorario_backend.domain;
+
+public enum TruncationReason {
+    DEADLINE, // The time budget of the request ran out
+    RESULT_LIMIT, // The maximum number of schedules was reached
+    CANCELLED // The client went away or the search was cancelled
+}
@@ -0,0 +1,129 @@
+package com.cmolina12.senehorario_backend.service;
+
+/**
+ * Helpers for the long[] bitsets used by the schedule solver, where bit i of
+ * the set is stored in word i / 64.
+ */
+
+final class Bits {
+
+    private Bits() {
+    }
+
+    /**
+     * Counts the bits set in the range [from, to) of a bitset.
+     *
+     * @param bits the bitset.
+     * @param from first bit of the range, inclusive.
+     * @param to last bit of the range, exclusive.
+     * @return the number of bits set in the range.
+     */
+
+    static int count(long[] bits, int from, int to) {
+        if (from >= to) {
+            return 0;
+        }
+        int firstWord = from >>> 6;
+        int lastWord = (to - 1) >>> 6;
+        long firstMask = -1L << from; // Shifts only use the low 6 bits, so this keeps the bits from 'from % 64' on.
+        long lastMask = -1L >>> (-to); // Keeps the bits up to '(to - 1) % 64'.
+
+        if (firstWord == lastWord) {
+            return Long.bitCount(bits[firstWord] & firstMask & lastMask);
+        }
+
+        int count = Long.bitCount(bits[firstWord] & firstMask);
+        for (int w = firstWord + 1; w < lastWord; w++) {
+            count += Long.bitCount(bits[w]);
+        }
+        return count + Long.bitCount(bits[lastWord] & lastMask);
+    }
+
+    /**
+     * Checks whether no bit is set in the range [from, to) of a bitset.
+     *
+     * @param bits the bitset.
+     * @param from first bit of the range, inclusive.
+     * @param to last bit of the range, exclusive.
+     * @return true if the range has no bit set, false otherwise.
+     */
+
+    static boolean isEmpty(long[] bits, int from, int to) {
+        if (from >= to) {
+            return true;
+        }
+        int firstWord = from >>> 6;
+        int lastWord = (to - 1) >>> 6;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> (-to);
+
+        if (firstWord == lastWord) {
+            return (bits[firstWord] & firstMask & lastMask) == 0;
+        }
+
+        if ((bits[firstWord] & firstMask) != 0) {
+            return false;
+        }
+        for (int w = firstWord + 1; w < lastWord; w++) {
+            if (bits[w] != 0) {
+                return false;
+            }
+        }
+        return (bits[lastWord] & lastMask) == 0;
+    }
+
+    /**
+     * Finds the next bit set at or after 'from' and before 'to'.
+     *
+     * @param bits the bitset.
+     * @param from first bit to look at, inclusive.
+     * @param to end of the search, exclusive.
+     * @return the index of the next bit set, or -1 if there is none in the range.
+     */
+
+    static int next(long[] bits, int from, int to) {
+        if (from >= to) {
+            return -1;
+        }
+        int w = from >>> 6;
+        long word = bits[w] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                int bit = (w << 6) + Long.numberOfTrailingZeros(word);
+                return bit < to ? bit : -1;
+            }
+            if (++w > (to - 1) >>> 6) {
+                return -1;
+            }
+            word = bits[w];
+        }
+    }
+
+    /**
+     * Sets the bits in the range [from, to) of a bitset.
+     *
+     * @param bits the bitset.
+     * @param from first bit of the range, inclusive.
+     * @param to last bit of the range, exclusive.
+     */
+
+    static void set(long[] bits, int from, int to) {
+        for (int bit = from; bit < to; bit++) {
+            bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Stores in 'target' the intersection of two bitsets of the same length.
+     *
+     * @param a the first bitset.
+     * @param b the second bitset.
+     * @param target where the intersection is written, it may be one of the operands.
+     */
+
+    static void and(long[] a, long[] b, long[] target) {
+        for (int w = 0; w < target.length; w++) {
+            target[w] = a[w] & b[w];
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.cmolina12.senehorario_backend.service;
+
+import com.cmolina12.senehorario_backend.domain.Course;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Search index over the normalized codes and titles of the courses of a catalog.
+ *
+ * Titles are matched by substring through an inverted trigram index: every
+ * three-character window of a title points to the courses that contain it, so
+ * the courses containing a query are among the intersection of the posting
+ * lists of its trigrams, and only those few are compared with the query. Codes
+ * are matched by prefix with a binary search over the codes sorted once.
+ * Queries shorter than a trigram fall back to a scan of the titles.
+ *
+ * Courses are identified by their position in the catalog, and every result is
+ * in catalog order unless it is ranked.
+ */
+
+final class CatalogIndex {
+
+    private final String[] codes; // Normalized code of each course.
+    private final String[] titles; // Normalized title of each course.
+    private final Integer[] byCode; // Positions of the courses sorted by code.
+    private final int[] codeOrder; // Position of each course in byCode, so codes compare as ints.
+    private final Map<Long, int[]> postings; // Courses whose title contains each trigram, in catalog order.
+
+    /**
+     * Builds the index.
+     *
+     * @param codes normalized code of each course, see CourseService.normalizeQuery.
+     * @param titles normalized title of each course, see CourseService.normalizeQuery.
+     */
+
+    CatalogIndex(String[] codes, String[] titles) {
+        this.codes = codes;
+        this.titles = titles;
+
+        this.byCode = new Integer[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            byCode[i] = i;
+        }
+        Arrays.sort(byCode, Comparator.comparing((Integer i) -> codes[i]));
+        this.codeOrder = new int[codes.length];
+        for (int k = 0; k < byCode.length; k++) {
+            codeOrder[byCode[k]] = k;
+        }
+
+        Map<Long, List<Integer>> lists = new HashMap<>();
+        for (int i = 0; i < titles.length; i++) {
+            for (int t = 0; t + 3 <= titles[i].length(); t++) {
+                List<Integer> list = lists.computeIfAbsent(trigram(titles[i], t), k -> new ArrayList<>());
+                if (list.isEmpty() || list.get(list.size() - 1) != i) {
+                    list.add(i); // Once per course, even if the trigram repeats in its title.
+                }
+            }
+        }
+        this.postings = new HashMap<>(lists.size() * 2);
+        for (Map.Entry<Long, List<Integer>> entry : lists.entrySet()) {
+            postings.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    /**
+     * Builds the index of a list of courses.
+     *
+     * @param courses the courses, their positions in the list identify them in the index.
+     * @return the index.
+     */
+
+    static CatalogIndex of(List<Course> courses) {
+        String[] codes = new String[courses.size()];
+        String[] titles = new String[courses.size()];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = CourseService.normalizeQuery(courses.get(i).getCode());
+            titles[i] = CourseService.normalizeQuery(courses.get(i).getTitle());
+        }
+        return new CatalogIndex(codes, titles);
+    }
+
+    // The three characters starting at the offset, packed into one key.
+    private static long trigram(String text, int offset) {
+        return (long) text.charAt(offset) << 32 | (long) text.charAt(offset + 1) << 16 | text.charAt(offset + 2);
+    }
+
+    int size() {
+        return codes.length;
+    }
+
+    /**
+     * Finds the courses whose title contains the query or whose code starts with it.
+     *
+     * @param query the query, normalized with CourseService.normalizeQuery. An empty query matches every course.
+     * @return positions of the matching courses, in catalog order.
+     */
+
+    int[] search(String query) {
+        BitSet matches = new BitSet(codes.length);
+
+        // Codes: the courses whose code starts with the query are contiguous in byCode.
+        for (int k = firstCodeNotBefore(query); k < byCode.length && codes[byCode[k]].startsWith(query); k++) {
+            matches.set(byCode[k]);
+        }
+
+        // Titles: only the courses having every trigram of the query can contain it.
+        if (query.length() < 3) {
+            for (int i = 0; i < titles.length; i++) {
+                if (titles[i].contains(query)) {
+                    matches.set(i);
+                }
+            }
+        } else {
+            for (int i : candidates(query)) {
+                if (titles[i].contains(query)) {
+                    matches.set(i);
+                }
+            }
+        }
+
+        return matches.stream().toArray();
+    }
+
+    // Position in byCode of the first code that is not before the query.
+    private int firstCodeNotBefore(String query) {
+        int low = 0;
+        int high = byCode.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (codes[byCode[mid]].compareTo(query) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Courses having every trigram of the query, the intersection starts with the shortest posting list.
+    private int[] candidates(String query) {
+        int[][] lists = new int[query.length() - 2][];
+        for (int t = 0; t < lists.length; t++) {
+            lists[t] = postings.get(trigram(query, t));
+            if (lists[t] == null) {
+                return new int[0]; // No title has this trigram.
+            }
+        }
+        Arrays.sort(lists, Comparator.comparingInt((int[] list) -> list.length));
+
+        int[] result = lists[0];
+        for (int t = 1; t < lists.length && result.length > 0; t++) {
+            result = intersect(result, lists[t]);
+        }
+        return result;
+    }
+
+    // Both lists are sorted, so they are merged in one pass.
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int size = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length;) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[size++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Finds the best matches of the query for an autocomplete box. Courses are ranked by how
+     * the query matches them: the exact code first, then codes starting with the query, titles
+     * starting with it, titles with a word starting with it, and titles containing it anywhere.
+     * Ties go to the shorter title, then to the code.
+     *
+     * @param query the query, normalized with CourseService.normalizeQuery.
+     * @param limit maximum number of courses to return.
+     * @return positions of the best matching courses, best first.
+     */
+
+    List<Integer> suggest(String query, int limit) {
+        int[] matches = search(query);
+
+        // Rank, title length and code order packed into one long per match, so ranking is sorting primitives.
+        long[] keys = new long[matches.length];
+        String wordStart = " " + query;
+        for (int m = 0; m < matches.length; m++) {
+            int i = matches[m];
+            keys[m] = (long) rank(i, query, wordStart) << 48 | (long) Math.min(titles[i].length(), 0xFFFF) << 32 | codeOrder[i];
+        }
+        Arrays.sort(keys);
+
+        List<Integer> ranked = new ArrayList<>(Math.min(limit, keys.length));
+        for (int m = 0; m < keys.length && m < limit; m++) {
+            ranked.add(byCode[(int) keys[m]]); // The low 32 bits are the code order.
+        }
+        return ranked;
+    }
+
+    // Lower is better, see suggest.
+    private int rank(int course, String query, String wordStart) {
+        if (codes[course].equals(query)) {
+            return 0;
+        }
+        if (codes[course].startsWith(query)) {
+            return 1;
+        }
+        if (titles[course].startsWith(query)) {
+            return 2;
+        }
+        if (titles[course].contains(wordStart)) {
+            return 3;
+        }
+        return 4;
+    }
+}
@@ -0,0 +1,34 @@
+package com.cmolina12.senehorario_backend.service;
+
+import com.cmolina12.senehorario_backend.models.ApiCourse;
+import java.time.Duration;
+import java.time.Instant;
+import lombok.Getter;
+
+/**
+ * A response of the catalog API as held in the cache of CourseService.fetchRawSections,
+ * along with when it was fetched, so stale responses can be told apart from fresh ones.
+ */
+
+public final class CatalogResponse {
+
+    @Getter
+    private final ApiCourse[] sections; // The sections returned by the API, shared by every caller.
+
+    @Getter
+    private final Instant fetchedAt; // When the API returned them.
+
+    public CatalogResponse(ApiCourse[] sections, Instant fetchedAt) {
+        this.sections = sections;
+        this.fetchedAt = fetchedAt;
+    }
+
+    /**
+     * @param now the current time.
+     * @return how long ago the response was fetched.
+     */
+
+    Duration age(Instant now) {
+        return Duration.between(fetchedAt, now);
+    }
+}
@@ -0,0 +1,151 @@
+package com.cmolina12.senehorario_backend.service;
+
+import com.cmolina12.senehorario_backend.domain.Course;
+import com.cmolina12.senehorario_backend.models.ApiCourse;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.stereotype.Component;
+
+/**
+ * The whole offering of the term, held in memory so the course endpoints are answered
+ * without going to the catalog API.
+ *
+ * CourseService loads it in the background and replaces it on every refresh; each
+ * version is immutable and swapped in one write, so readers never see a half-built
+ * catalog. Until the first load succeeds the snapshot is empty and CourseService keeps
+ * asking the API.
+ */
+
+@Component
+public class CatalogSnapshot {
+
+    private volatile Snapshot current; // Null until the first load.
+
+    /**
+     * @return true once the catalog has been loaded.
+     */
+
+    public boolean isLoaded() {
+        return current != null;
+    }
+
+    /**
+     * @return when the current catalog was loaded, or null if it was never loaded.
+     */
+
+    public Instant getLoadedAt() {
+        Snapshot snapshot = current;
+        return snapshot == null ? null : snapshot.loadedAt;
+    }
+
+    /**
+     * @return the number of courses in the current catalog.
+     */
+
+    public int size() {
+        Snapshot snapshot = current;
+        return snapshot == null ? 0 : snapshot.courses.length;
+    }
+
+    /**
+     * Replaces the catalog.
+     *
+     * @param raw every section of the term, as returned by the API.
+     * @param courses the same sections converted into domain courses, see CourseService.toDomainCourses.
+     */
+
+    void replace(ApiCourse[] raw, List<Course> courses) {
+        current = new Snapshot(raw, courses, Instant.now());
+    }
+
+    /**
+     * Finds the courses matching a query the same way the search bar of the catalog does
+     * (the title contains the query or the code starts with it), and returns their sections.
+     *
+     * @param query the query, normalized with CourseService.normalizeQuery.
+     * @return the raw sections of the matching courses, in catalog order.
+     */
+
+    ApiCourse[] rawSections(String query) {
+        Snapshot snapshot = current;
+        List<ApiCourse> sections = new ArrayList<>();
+        for (int i : snapshot.index.search(query)) {
+            sections.addAll(snapshot.rawByCourse.get(i));
+        }
+        return sections.toArray(new ApiCourse[0]);
+    }
+
+    /**
+     * @param query the query, normalized with CourseService.normalizeQuery.
+     * @return the courses matching the query like in rawSections, in catalog order. They are shared and must not be modified.
+     */
+
+    List<Course> domainCourses(String query) {
+        Snapshot snapshot = current;
+        List<Course> courses = new ArrayList<>();
+        for (int i : snapshot.index.search(query)) {
+            courses.add(snapshot.courses[i]);
+        }
+        return courses;
+    }
+
+    /**
+     * @param query the query, normalized with CourseService.normalizeQuery.
+     * @param limit maximum number of courses to return.
+     * @return the courses that best match the query, best first, see CatalogIndex.suggest.
+     */
+
+    List<Course> suggest(String query, int limit) {
+        Snapshot snapshot = current;
+        List<Course> courses = new ArrayList<>();
+        for (int i : snapshot.index.suggest(query, limit)) {
+            courses.add(snapshot.courses[i]);
+        }
+        return courses;
+    }
+
+    /**
+     * @param code the course code, normalized with CourseService.normalizeQuery, e.g. ISIS1204.
+     * @return the course, or null if it is not in the catalog. It is shared and must not be modified.
+     */
+
+    Course course(String code) {
+        Snapshot snapshot = current;
+        Integer index = snapshot.indexByCode.get(code);
+        return index == null ? null : snapshot.courses[index];
+    }
+
+    private static final class Snapshot {
+
+        private final Instant loadedAt;
+        private final Course[] courses; // Every course of the term, in catalog order.
+        private final CatalogIndex index; // Search index over the codes and titles.
+        private final List<List<ApiCourse>> rawByCourse; // Raw sections of each course.
+        private final Map<String, Integer> indexByCode; // Position of each course by normalized code.
+
+        Snapshot(ApiCourse[] raw, List<Course> courses, Instant loadedAt) {
+            this.loadedAt = loadedAt;
+            this.courses = courses.toArray(new Course[0]);
+            String[] codes = new String[this.courses.length];
+            String[] titles = new String[this.courses.length];
+            this.rawByCourse = new ArrayList<>(this.courses.length);
+            this.indexByCode = new HashMap<>();
+            for (int i = 0; i < this.courses.length; i++) {
+                codes[i] = CourseService.normalizeQuery(this.courses[i].getCode());
+                titles[i] = CourseService.normalizeQuery(this.courses[i].getTitle());
+                rawByCourse.add(new ArrayList<>());
+                indexByCode.put(codes[i], i);
+            }
+            this.index = new CatalogIndex(codes, titles);
+            for (ApiCourse section : raw) {
+                Integer index = indexByCode.get(CourseService.normalizeQuery(section.getClazz() + section.getCourse()));
+                if (index != null) {
+                    rawByCourse.get(index).add(section);
+                }
+            }
+        }
+    }
+}
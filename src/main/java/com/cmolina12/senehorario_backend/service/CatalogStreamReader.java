@@ -0,0 +1,182 @@
+package com.cmolina12.senehorario_backend.service;
+
+import com.cmolina12.senehorario_backend.domain.Course;
+import com.cmolina12.senehorario_backend.domain.Meeting;
+import com.cmolina12.senehorario_backend.domain.Section;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a catalog API response token by token straight into domain courses, without building
+ * the ApiCourse, Schedule and Instructor objects first. Only the fields the domain keeps are
+ * read, the rest of each element (attributes, comments, dates, ...) is skipped.
+ *
+ * The courses are the same ones CourseService.toDomainCourses builds from the parsed response,
+ * in the same order. Missing schedules or instructors are read as none.
+ */
+
+final class CatalogStreamReader {
+
+    private static final JsonFactory JSON = new JsonFactory(); // Thread-safe, parsers are created per response.
+
+    private CatalogStreamReader() {
+    }
+
+    /**
+     * Reads the courses of a response.
+     *
+     * @param body the response body, a JSON array of sections. It is not closed.
+     * @return the courses with their sections, in the order they first appear.
+     * @throws IOException if the body cannot be read or is not an array of sections.
+     */
+
+    static List<Course> readCourses(InputStream body) throws IOException {
+        Map<String, Course> courses = new LinkedHashMap<>();
+        try (JsonParser parser = JSON.createParser(body)) {
+            JsonToken first = parser.nextToken();
+            if (first == null || first == JsonToken.VALUE_NULL) {
+                return new ArrayList<>(); // Empty body, no sections.
+            }
+            expect(parser, first, JsonToken.START_ARRAY);
+
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                expect(parser, token, JsonToken.START_OBJECT);
+                readSection(parser, courses);
+            }
+        }
+        return new ArrayList<>(courses.values());
+    }
+
+    // Reads one element of the array, the parser is on its START_OBJECT.
+    private static void readSection(JsonParser parser, Map<String, Course> courses) throws IOException {
+        String nrc = null;
+        String clazz = null;
+        String course = null;
+        String section = null;
+        String credits = null;
+        String title = null;
+        String maxenrol = null;
+        String term = null;
+        String ptrm = null;
+        String seatsavail = null;
+        String campus = null;
+        List<Meeting> meetings = new ArrayList<>();
+        List<String> professors = new ArrayList<>();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken(); // Moves to the value.
+            switch (field) {
+                case "nrc" -> nrc = parser.getValueAsString();
+                case "class" -> clazz = parser.getValueAsString();
+                case "course" -> course = parser.getValueAsString();
+                case "section" -> section = parser.getValueAsString();
+                case "credits" -> credits = parser.getValueAsString();
+                case "title" -> title = parser.getValueAsString();
+                case "maxenrol" -> maxenrol = parser.getValueAsString();
+                case "term" -> term = parser.getValueAsString();
+                case "ptrm" -> ptrm = parser.getValueAsString();
+                case "seatsavail" -> seatsavail = parser.getValueAsString();
+                case "campus" -> campus = parser.getValueAsString();
+                case "schedules" -> readMeetings(parser, meetings);
+                case "instructors" -> readProfessors(parser, professors);
+                default -> parser.skipChildren(); // Not kept by the domain.
+            }
+        }
+
+        String code = clazz + course;
+        Course target = courses.get(code);
+        if (target == null) {
+            target = new Course(code, title, Integer.parseInt(credits));
+            courses.put(code, target);
+        }
+
+        int totalSeats = CourseService.parseIntSafe(maxenrol);
+        int availableSeats = Math.max(0, Math.min(CourseService.parseIntSafe(seatsavail), totalSeats)); // Clamped like toDomainCourses.
+
+        target.addSection(new Section(nrc, section, term, ptrm, campus, meetings, professors, availableSeats, totalSeats));
+    }
+
+    // Reads the schedules of a section into its meetings, one per day of each schedule.
+    private static void readMeetings(JsonParser parser, List<Meeting> meetings) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren(); // Null, no schedules.
+            return;
+        }
+
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String timeIni = null;
+            String timeFin = null;
+            String building = null;
+            String classroom = null;
+            String l = null, m = null, i = null, j = null, v = null, s = null;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "time_ini" -> timeIni = parser.getValueAsString();
+                    case "time_fin" -> timeFin = parser.getValueAsString();
+                    case "building" -> building = parser.getValueAsString();
+                    case "classroom" -> classroom = parser.getValueAsString();
+                    case "l" -> l = parser.getValueAsString();
+                    case "m" -> m = parser.getValueAsString();
+                    case "i" -> i = parser.getValueAsString();
+                    case "j" -> j = parser.getValueAsString();
+                    case "v" -> v = parser.getValueAsString();
+                    case "s" -> s = parser.getValueAsString();
+                    default -> parser.skipChildren();
+                }
+            }
+
+            List<DayOfWeek> days = CourseService.parseDays(l, m, i, j, v, s);
+            if (days.isEmpty()) {
+                continue; // Times are only parsed for the days the schedule meets, like toDomainCourses.
+            }
+            LocalTime start = CourseService.parseTime(timeIni);
+            LocalTime end = CourseService.parseTime(timeFin);
+            String location = building + " " + classroom;
+            for (DayOfWeek day : days) {
+                meetings.add(new Meeting(day, start, end, location));
+            }
+        }
+    }
+
+    // Reads the instructors of a section into its professors, with the names reordered.
+    private static void readProfessors(JsonParser parser, List<String> professors) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren(); // Null, no instructors.
+            return;
+        }
+
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String name = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if (field.equals("name")) {
+                    name = parser.getValueAsString();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            professors.add(CourseService.reorderProfessorName(name));
+        }
+    }
+
+    private static void expect(JsonParser parser, JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new IOException("Unexpected " + actual + " in the catalog response at " + parser.currentLocation() + ", expected " + expected);
+        }
+    }
+}
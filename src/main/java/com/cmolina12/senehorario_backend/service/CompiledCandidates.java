@@ -0,0 +1,349 @@
+package com.cmolina12.senehorario_backend.service;
+
+import com.cmolina12.senehorario_backend.domain.Section;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Candidate sections of a schedule request compiled for the solver.
+ *
+ * Sections of the same course with exactly the same meeting times (they only
+ * differ in NRC, professor or seats) conflict with exactly the same sections,
+ * so they are collapsed into one group and the search runs over groups. Every
+ * group gets a dense index (groups of course 0 first, then course 1, and so
+ * on) and a compatibility row: bit j of row i is set when groups i and j
+ * belong to different courses and do not conflict. The rows are built once
+ * per request, so the search only does bit lookups. The rows are computed from
+ * the packed form of the meetings (see PackedMeetings), stored for every group
+ * in one contiguous array.
+ *
+ * A schedule found by the search (one group per course) stands for every
+ * combination of the members of its groups, which expand() enumerates using
+ * the flat index of each section (sections of course 0 first in the posted
+ * order, then course 1, and so on).
+ */
+
+final class CompiledCandidates {
+
+    private final List<List<Section>> candidates; // Sections of every course that satisfy the constraints.
+    private final int[] courseOffsets; // Dense index of the first group of each course, plus the total at the end.
+    private final int[] flatOffsets; // Flat index of the first section of each course, plus the total at the end.
+    private final Section[] sections; // Sections by flat index.
+    private final int[][] members; // Flat indices of the sections of each group, in the posted order.
+    private final int[] groupOf; // Dense index of the group of each section, by flat index.
+    private final int[] rankOf; // Position of each section in its group, by flat index.
+    private final int[] times; // Packed meetings of every group, one after the other.
+    private final int[] timeOffsets; // Index in times of the meetings of each group, plus the total at the end.
+    private final long[][] compatible; // Compatibility row of every group.
+
+    private CompiledCandidates(
+        List<List<Section>> candidates,
+        int[] courseOffsets,
+        int[] flatOffsets,
+        Section[] sections,
+        int[][] members,
+        int[] groupOf,
+        int[] rankOf,
+        int[] times,
+        int[] timeOffsets,
+        long[][] compatible
+    ) {
+        this.candidates = candidates;
+        this.courseOffsets = courseOffsets;
+        this.flatOffsets = flatOffsets;
+        this.sections = sections;
+        this.members = members;
+        this.groupOf = groupOf;
+        this.rankOf = rankOf;
+        this.times = times;
+        this.timeOffsets = timeOffsets;
+        this.compatible = compatible;
+    }
+
+    /**
+     * Compiles the candidates of a request, collapsing the sections of a course that meet at the same times.
+     *
+     * @param candidates List of lists of Section objects representing the courses and their sections.
+     * @return the compiled candidates.
+     */
+
+    static CompiledCandidates compile(List<List<Section>> candidates) {
+        return compile(candidates, true, SectionFilter.none());
+    }
+
+    /**
+     * Compiles the candidates of a request: groups the sections, assigns the dense indices,
+     * packs the meetings and builds the pairwise compatibility matrix.
+     *
+     * @param candidates List of lists of Section objects representing the courses and their sections.
+     * @param collapseEquivalent true to put the sections of a course with the same meeting times in one group,
+     *                           false to give every section a group of its own.
+     * @param filter Constraints of the request, the sections it rejects keep their flat index but get no group,
+     *               so the search never sees them.
+     * @return the compiled candidates.
+     */
+
+    static CompiledCandidates compile(List<List<Section>> candidates, boolean collapseEquivalent, SectionFilter filter) {
+        int courses = candidates.size();
+        int[] flatOffsets = new int[courses + 1];
+        for (int c = 0; c < courses; c++) {
+            flatOffsets[c + 1] = flatOffsets[c] + candidates.get(c).size();
+        }
+
+        Section[] sections = new Section[flatOffsets[courses]];
+        int[] groupOf = new int[sections.length];
+        int[] rankOf = new int[sections.length];
+        int[] courseOffsets = new int[courses + 1];
+        List<int[]> groups = new ArrayList<>();
+        List<int[]> groupTimes = new ArrayList<>();
+        List<List<Section>> allowed = new ArrayList<>(courses);
+        for (int c = 0; c < courses; c++) {
+            // Groups of the course by meeting times, in order of first appearance.
+            Map<Object, List<Integer>> byTimes = new LinkedHashMap<>();
+            Map<Object, int[]> packedByKey = new HashMap<>();
+            List<Section> course = candidates.get(c);
+            List<Section> allowedSections = new ArrayList<>();
+            for (int s = 0; s < course.size(); s++) {
+                int flat = flatOffsets[c] + s;
+                sections[flat] = course.get(s);
+                int[] packed = PackedMeetings.pack(course.get(s)); // Sorted, so the same weekly pattern always packs the same way.
+                if (!filter.allows(course.get(s), packed)) {
+                    groupOf[flat] = -1; // Masked out by the constraints.
+                    continue;
+                }
+                allowedSections.add(course.get(s));
+                Object key = collapseEquivalent ? IntBuffer.wrap(packed) : flat; // IntBuffer compares and hashes its contents.
+                byTimes.computeIfAbsent(key, k -> new ArrayList<>()).add(flat);
+                packedByKey.putIfAbsent(key, packed);
+            }
+
+            for (Map.Entry<Object, List<Integer>> entry : byTimes.entrySet()) {
+                List<Integer> group = entry.getValue();
+                int[] flats = new int[group.size()];
+                for (int rank = 0; rank < flats.length; rank++) {
+                    flats[rank] = group.get(rank);
+                    groupOf[flats[rank]] = groups.size();
+                    rankOf[flats[rank]] = rank;
+                }
+                groups.add(flats);
+                groupTimes.add(packedByKey.get(entry.getKey()));
+            }
+            courseOffsets[c + 1] = groups.size();
+            allowed.add(allowedSections);
+        }
+
+        int total = groups.size();
+        int[][] members = groups.toArray(new int[0][]);
+        int[] timeOffsets = new int[total + 1];
+        for (int g = 0; g < total; g++) {
+            timeOffsets[g + 1] = timeOffsets[g] + groupTimes.get(g).length;
+        }
+        int[] times = new int[timeOffsets[total]];
+        for (int g = 0; g < total; g++) {
+            System.arraycopy(groupTimes.get(g), 0, times, timeOffsets[g], groupTimes.get(g).length);
+        }
+
+        // Only pairs from different courses are compared, each of them once.
+        long[][] compatible = new long[total][words(total)];
+        for (int c = 0; c < courses; c++) {
+            for (int i = courseOffsets[c]; i < courseOffsets[c + 1]; i++) {
+                for (int j = courseOffsets[c + 1]; j < total; j++) {
+                    if (!PackedMeetings.overlap(times, timeOffsets[i], timeOffsets[i + 1], times, timeOffsets[j], timeOffsets[j + 1])) {
+                        compatible[i][j >>> 6] |= 1L << j;
+                        compatible[j][i >>> 6] |= 1L << i;
+                    }
+                }
+            }
+        }
+
+        return new CompiledCandidates(allowed, courseOffsets, flatOffsets, sections, members, groupOf, rankOf, times, timeOffsets, compatible);
+    }
+
+    /**
+     * @param bits the number of bits to hold.
+     * @return the number of longs needed to hold the bits.
+     */
+
+    static int words(int bits) {
+        return (bits + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    /**
+     * @return the sections of every course that satisfy the constraints, in the posted order.
+     */
+
+    List<List<Section>> getCandidates() {
+        return candidates;
+    }
+
+    int courseCount() {
+        return candidates.size();
+    }
+
+    int groupCount() {
+        return members.length;
+    }
+
+    /**
+     * @return the dense index of the first group of the course.
+     */
+
+    int firstGroup(int course) {
+        return courseOffsets[course];
+    }
+
+    /**
+     * @return the dense index after the last group of the course.
+     */
+
+    int endGroup(int course) {
+        return courseOffsets[course + 1];
+    }
+
+    /**
+     * @return the first section of the group, which has the meeting times of all of them.
+     */
+
+    Section representative(int group) {
+        return sections[members[group][0]];
+    }
+
+    int groupSize(int group) {
+        return members[group].length;
+    }
+
+    /**
+     * @return the flat index of the section at the given position of the group.
+     */
+
+    int member(int group, int rank) {
+        return members[group][rank];
+    }
+
+    /**
+     * @return the sections of the group, in the posted order.
+     */
+
+    List<Section> groupSections(int group) {
+        List<Section> groupSections = new ArrayList<>(members[group].length);
+        for (int flat : members[group]) {
+            groupSections.add(sections[flat]);
+        }
+        return groupSections;
+    }
+
+    /**
+     * @return the flat index of the first section of the course.
+     */
+
+    int firstFlat(int course) {
+        return flatOffsets[course];
+    }
+
+    /**
+     * @return the flat index after the last section of the course.
+     */
+
+    int endFlat(int course) {
+        return flatOffsets[course + 1];
+    }
+
+    /**
+     * @return the dense index of the group of the section, or -1 if the constraints rejected it.
+     */
+
+    int groupOf(int flat) {
+        return groupOf[flat];
+    }
+
+    int rankOf(int flat) {
+        return rankOf[flat];
+    }
+
+    /**
+     * @return every candidate section by flat index, as a read-only list.
+     */
+
+    List<Section> sectionTable() {
+        return Collections.unmodifiableList(Arrays.asList(sections));
+    }
+
+    /**
+     * Builds the list of sections of an expanded schedule.
+     *
+     * @param flat flat index of the section chosen for each course.
+     * @return the sections of the schedule, in course order.
+     */
+
+    List<Section> schedule(int[] flat) {
+        List<Section> schedule = new ArrayList<>(flat.length);
+        for (int index : flat) {
+            schedule.add(sections[index]);
+        }
+        return schedule;
+    }
+
+    /**
+     * Hands every combination of the members of the chosen groups to the sink, the member
+     * of the last course changing fastest. Nothing is materialized besides the current combination.
+     *
+     * @param groups dense index of the group chosen for each course.
+     * @param fromRanks position in each group of the first combination to hand over, or null to start with the first members.
+     * @param sink receives the flat indices of each combination, and may stop the expansion.
+     * @return false if the sink stopped the expansion, true otherwise.
+     */
+
+    boolean expand(int[] groups, int[] fromRanks, ScheduleSink sink) {
+        int courses = groups.length;
+        int[] ranks = fromRanks != null ? fromRanks.clone() : new int[courses];
+        int[] flat = new int[courses];
+        for (int c = 0; c < courses; c++) {
+            flat[c] = members[groups[c]][ranks[c]];
+        }
+
+        while (true) {
+            if (!sink.accept(flat)) {
+                return false;
+            }
+
+            // Advance the last course that has members left, the courses after it start over.
+            int c = courses - 1;
+            while (c >= 0 && ranks[c] + 1 == members[groups[c]].length) {
+                ranks[c] = 0;
+                flat[c] = members[groups[c]][0];
+                c--;
+            }
+            if (c < 0) {
+                return true;
+            }
+            ranks[c]++;
+            flat[c] = members[groups[c]][ranks[c]];
+        }
+    }
+
+    /**
+     * @return the compatibility row of the group, it must not be modified.
+     */
+
+    long[] compatibleRow(int group) {
+        return compatible[group];
+    }
+
+    /**
+     * Checks whether two groups of different courses can be taken together.
+     *
+     * @param a dense index of the first group.
+     * @param b dense index of the second group.
+     * @return true if the groups do not conflict, false otherwise.
+     */
+
+    boolean compatible(int a, int b) {
+        return (compatible[a][b >>> 6] & (1L << b)) != 0;
+    }
+}
@@ -1,19 +1,37 @@
 package com.cmolina12.senehorario_backend.service;
 
 import com.cmolina12.senehorario_backend.domain.Course;
+import com.cmolina12.senehorario_backend.domain.CourseSuggestion;
 import com.cmolina12.senehorario_backend.domain.Meeting;
 import com.cmolina12.senehorario_backend.domain.Section;
 import com.cmolina12.senehorario_backend.models.ApiCourse;
 import com.cmolina12.senehorario_backend.models.Instructor;
 import com.cmolina12.senehorario_backend.models.Schedule;
+import com.github.benmanes.caffeine.cache.Cache;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.DayOfWeek;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
@@ -23,31 +41,203 @@ public class CourseService {
     @Autowired
     private RestTemplate restTemplate; // RestTemplate is used to make HTTP requests to the API to fetch course data.
 
+    @Autowired
+    private ExecutorService courseFetchExecutor; // Threads used to fetch several courses at the same time.
+
+    @Autowired
+    private ExecutorService catalogRefreshExecutor; // Threads used to refresh stale cached responses, see RestConfig.
+
+    @Autowired
+    private Cache<String, CatalogResponse> catalogSearchCache; // Responses of the API by normalized query, see CacheConfig.
+
+    @Autowired
+    private CatalogSnapshot catalogSnapshot; // Full offering of the term, once loaded by refreshCatalogSnapshot.
+
+    private final SingleFlight<String, ApiCourse[]> apiCalls = new SingleFlight<>(); // Concurrent misses of the same query share one API call.
+
+    private final SingleFlight<String, List<Course>> latestCalls = new SingleFlight<>(); // Concurrent fetchLatestSections of the same code share one API call.
+
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet(); // Queries being refreshed in the background right now.
+
+    @Value("${senehorario.catalog.cache.ttl:5m}")
+    private Duration freshFor = Duration.ofMinutes(5); // Age until which a cached response is served as is.
+
+    @Value("${senehorario.catalog.cache.max-stale:1h}")
+    private Duration maxStale = Duration.ofHours(1); // Age until which a stale response is served while it is refreshed in the background.
+
     @Value("${uniandes.api.base-url}")
     private String apiBaseUrl;
 
+    @Value("${senehorario.catalog.snapshot.enabled:true}")
+    private boolean snapshotEnabled; // Whether the full offering is loaded and used to answer the searches.
+
+    public static final int MAX_SUGGESTIONS = 50; // Upper bound of the suggestions returned by one request.
+
+    public static final int MAX_COURSE_CODES = 10; // Upper bound of the distinct courses fetched by one request.
+
+    private static final Logger log = LoggerFactory.getLogger(CourseService.class);
+
+    private static final String API_QUERY = "?term=&ptrm=&prefix=&attr=&nameInput={nameInput}"; // Query string of every request to the API.
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+"); // Accents left apart by the NFD normalization.
+
     /**
      * Fetches raw course sections from the API based on the provided name input.
      * This actually works the same way as if you were to use the search bar in the
      * website.
      *
+     * Responses are cached by normalized query (see normalizeQuery), so "cálculo " and
+     * "CALCULO" share one entry. A cached response is served as is while it is fresh (the TTL);
+     * once stale it is still served at once, and refreshed in the background, until it reaches the
+     * max staleness. Older responses are fetched again before answering, and if the API fails the
+     * last known good response is served instead of the error. Concurrent misses of the same query are coalesced: the first one calls the API and the
+     * others wait for its response (or its failure) instead of sending the same request again.
+     * The returned array may be shared with other callers and must not be modified.
+     *
      * @param nameInput the name input to filter course sections.
      * @return an array of ApiCourse objects representing the course sections.
      */
 
     public ApiCourse[] fetchRawSections(String nameInput) {
+        String query = normalizeQuery(nameInput);
+
+        if (catalogSnapshot.isLoaded()) {
+            return catalogSnapshot.rawSections(query); // Answered from the full catalog held in memory.
+        }
+        return fetchCachedSections(query);
+    }
+
+    /**
+     * Fetches a query through the cache and the API as described in fetchRawSections, without
+     * looking at the catalog snapshot.
+     *
+     * @param query the normalized query.
+     * @return the course sections, an empty array if there are none. May be shared, must not be modified.
+     */
+
+    private ApiCourse[] fetchCachedSections(String query) {
+        CatalogResponse cached = catalogSearchCache.getIfPresent(query);
+        if (cached != null) {
+            Duration age = cached.age(Instant.now());
+            if (age.compareTo(freshFor) < 0) {
+                return cached.getSections(); // Served without going to the API.
+            }
+            if (age.compareTo(maxStale) < 0) {
+                refreshInBackground(query);
+                return cached.getSections(); // Seats may be a bit behind, the refresh catches up for the next callers.
+            }
+            // Too old to be served without asking the API first.
+        }
+
+        try {
+            return apiCalls.run(query, () -> fetchAndCache(query));
+        } catch (RuntimeException e) {
+            if (cached == null) {
+                throw e; // Nothing known about this query.
+            }
+            log.warn("Could not fetch \"{}\" from the catalog API, serving the response fetched at {}", query, cached.getFetchedAt(), e);
+            return cached.getSections();
+        }
+    }
+
+    /**
+     * Fetches a query from the API and caches the response, unless another call cached a fresh one meanwhile.
+     *
+     * @param query the normalized query.
+     * @return the course sections, an empty array if there are none.
+     */
+
+    private ApiCourse[] fetchAndCache(String query) {
+        CatalogResponse again = catalogSearchCache.asMap().get(query); // Not counted in the cache statistics, the lookup already was.
+        if (again != null && again.age(Instant.now()).compareTo(freshFor) < 0) {
+            return again.getSections(); // Another call for this query finished between the lookup and now.
+        }
+        ApiCourse[] fetched = fetchFromApi(query);
+        catalogSearchCache.put(query, new CatalogResponse(fetched, Instant.now())); // Empty responses are cached too, so unknown courses do not hit the API every time.
+        return fetched;
+    }
+
+    /**
+     * Refreshes a cached query on the refresh threads, once at a time per query. If the API fails,
+     * or too many refreshes are already waiting, the stale response stays in the cache and the next
+     * caller tries again.
+     *
+     * @param query the normalized query.
+     */
+
+    private void refreshInBackground(String query) {
+        if (!refreshing.add(query)) {
+            return; // Already being refreshed.
+        }
+        try {
+            catalogRefreshExecutor.execute(() -> {
+                try {
+                    apiCalls.run(query, () -> fetchAndCache(query));
+                } catch (RuntimeException e) {
+                    log.warn("Could not refresh \"{}\" from the catalog API, keeping the cached response", query, e);
+                } finally {
+                    refreshing.remove(query);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(query); // Queue full or shutting down, the cached response is served as is.
+        }
+    }
+
+    /**
+     * Normalizes a search query so equivalent queries share a cache entry: surrounding spaces
+     * are removed, repeated spaces collapsed, accents dropped and letters upper-cased.
+     *
+     * @param nameInput the name input as typed by the user.
+     * @return the normalized query, e.g. "CALCULO DIFERENCIAL" for " cálculo  diferencial".
+     */
+
+    public static String normalizeQuery(String nameInput) {
+        if (nameInput == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(nameInput.trim(), Normalizer.Form.NFD); // Splits "á" into "a" and its accent.
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("").replaceAll("\\s+", " ").toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Fetches raw course sections from the API, without the cache.
+     *
+     * @param query the normalized query.
+     * @return the course sections, an empty array if there are none.
+     */
+
+    private ApiCourse[] fetchFromApi(String query) {
         String url =
             apiBaseUrl +
-            "?term=&ptrm=&prefix=&attr=&nameInput=" + // The URL is constructed to include the base URL, and query
-            // parameters for term, ptrm, prefix, attr, and nameInput.
-            nameInput.toUpperCase(); // The URL is constructed to include the base URL, and query parameters for
-        // term, ptrm, prefix, attr, and nameInput INITIALLY. The nameInput is
-        // converted to uppercase to match the expected format in the API. Additional
-        // query parameters can be added after the nameInput if needed.
+            API_QUERY; // The URL is constructed to include the base URL, and query
+        // parameters for term, ptrm, prefix, attr, and nameInput INITIALLY. The nameInput is
+        // a template variable, so it is encoded and every query shares one uri tag in the
+        // http.client.requests metrics. Additional query parameters can be added after the nameInput if needed.
 
         // The RestTemplate is used to make a GET request to the constructed URL, and
         // the response is expected to be an array of ApiCourse objects.
-        return restTemplate.getForObject(url, ApiCourse[].class);
+        ApiCourse[] response = restTemplate.getForObject(url, ApiCourse[].class, query);
+        return response != null ? response : new ApiCourse[0]; // The cache cannot hold null.
+    }
+
+    /**
+     * Fetches courses from the API reading the response as it arrives straight into domain courses,
+     * without the intermediate ApiCourse objects of fetchFromApi, and without the cache.
+     *
+     * @param query the normalized query.
+     * @return the same courses as toDomainCourses(fetchFromApi(query)).
+     */
+
+    private List<Course> fetchDomainFromApi(String query) {
+        List<Course> courses = restTemplate.execute(
+            apiBaseUrl + API_QUERY,
+            HttpMethod.GET,
+            null,
+            response -> CatalogStreamReader.readCourses(response.getBody()), // Failed responses never get here, the RestTemplate throws first.
+            query
+        );
+        return courses != null ? courses : new ArrayList<>();
     }
 
     /**
@@ -59,9 +249,25 @@ public class CourseService {
      */
 
     public List<Course> getDomainCourses(String nameInput) {
+        if (catalogSnapshot.isLoaded()) {
+            return catalogSnapshot.domainCourses(normalizeQuery(nameInput)); // Already converted when the catalog was loaded.
+        }
+
         ApiCourse[] raw = fetchRawSections(nameInput); // Fetches raw course sections from the API based on the provided
         // name input.
 
+        return toDomainCourses(raw);
+    }
+
+    /**
+     * Converts raw course sections, as returned by the API, into a list of Course
+     * objects, each containing its sections.
+     *
+     * @param raw the raw course sections.
+     * @return a list of Course objects representing the courses and their sections.
+     */
+
+    public List<Course> toDomainCourses(ApiCourse[] raw) {
         // Temporal map
         Map<String, Course> courseMap = new LinkedHashMap<>(); // Initializes a map to hold courses by their code.
 
@@ -132,7 +338,7 @@ public class CourseService {
      * @return a LocalTime object representing the parsed time.
      */
 
-    private LocalTime parseTime(String hhmm) {
+    static LocalTime parseTime(String hhmm) {
         if (hhmm == null || hhmm.length() < 4) {
             throw new IllegalArgumentException(
                 "Invalid time format when trying to parse: " + hhmm
@@ -152,14 +358,30 @@ public class CourseService {
      */
 
     private List<DayOfWeek> parseDays(Schedule s) {
+        return parseDays(s.getL(), s.getM(), s.getI(), s.getJ(), s.getV(), s.getS());
+    }
+
+    /**
+     * Parses the day flags of a schedule, as sent by the API, and returns the days of the week.
+     *
+     * @param l "L" if the schedule meets on Monday.
+     * @param m "M" if the schedule meets on Tuesday.
+     * @param i "I" if the schedule meets on Wednesday.
+     * @param j "J" if the schedule meets on Thursday.
+     * @param v "V" if the schedule meets on Friday.
+     * @param s "S" if the schedule meets on Saturday.
+     * @return a list of DayOfWeek objects representing the days of the week.
+     */
+
+    static List<DayOfWeek> parseDays(String l, String m, String i, String j, String v, String s) {
         List<DayOfWeek> days = new ArrayList<>(); // Initializes an empty list to hold the days of the week.
 
-        if ("L".equalsIgnoreCase(s.getL())) days.add(DayOfWeek.MONDAY);
-        if ("M".equalsIgnoreCase(s.getM())) days.add(DayOfWeek.TUESDAY);
-        if ("I".equalsIgnoreCase(s.getI())) days.add(DayOfWeek.WEDNESDAY);
-        if ("J".equalsIgnoreCase(s.getJ())) days.add(DayOfWeek.THURSDAY);
-        if ("V".equalsIgnoreCase(s.getV())) days.add(DayOfWeek.FRIDAY);
-        if ("S".equalsIgnoreCase(s.getS())) days.add(DayOfWeek.SATURDAY);
+        if ("L".equalsIgnoreCase(l)) days.add(DayOfWeek.MONDAY);
+        if ("M".equalsIgnoreCase(m)) days.add(DayOfWeek.TUESDAY);
+        if ("I".equalsIgnoreCase(i)) days.add(DayOfWeek.WEDNESDAY);
+        if ("J".equalsIgnoreCase(j)) days.add(DayOfWeek.THURSDAY);
+        if ("V".equalsIgnoreCase(v)) days.add(DayOfWeek.FRIDAY);
+        if ("S".equalsIgnoreCase(s)) days.add(DayOfWeek.SATURDAY);
 
         return days; // Returns the list of days of the week.
     }
@@ -172,17 +394,165 @@ public class CourseService {
      */
 
     public List<Section> findSectionsByCourseCode(String code) {
-        List<Course> courses = getDomainCourses(code); // Fetches the list of courses based on the provided course code.
+        String query = normalizeQuery(code);
+        if (catalogSnapshot.isLoaded()) {
+            Course course = catalogSnapshot.course(query);
+            if (course != null) {
+                return new ArrayList<>(course.getSections()); // The course is shared, callers get their own list.
+            }
+            // Not in the catalog yet (e.g. opened after the last refresh), the API may know it.
+        }
+
+        for (Course course : toDomainCourses(fetchCachedSections(query))) { // Through the cache, the snapshot was already asked.
+            if (normalizeQuery(course.getCode()).equals(query)) {
+                return new ArrayList<>(course.getSections()); // The query also matches longer codes and titles, only this course is wanted.
+            }
+        }
+        return new ArrayList<>(); // If no course has this code, return an empty list.
+    }
+
+    /**
+     * Fetches the sections of a course straight from the API, skipping the snapshot and the cache,
+     * for data that must be current such as the seats. Concurrent fetches of the same code share one
+     * API call. The response is read directly into domain sections (see CatalogStreamReader).
+     *
+     * Only the seat poller calls this method, on every tick, so the cheaper reading is worth more
+     * than refreshing the raw cache with the response: the searches are answered from the snapshot,
+     * which is refreshed on its own, and a cached raw response still refreshes itself once stale.
+     *
+     * @param code the course code, e.g. ISIS1204.
+     * @return the sections of the course as the API returns them now, empty if it has none.
+     */
+
+    public List<Section> fetchLatestSections(String code) {
+        String query = normalizeQuery(code);
+
+        for (Course course : latestCalls.run(query, () -> fetchDomainFromApi(query))) {
+            if (normalizeQuery(course.getCode()).equals(query)) { // The query also matches longer codes and titles, only this course is wanted.
+                return new ArrayList<>(course.getSections()); // The courses are shared by the coalesced callers, each one gets its own list.
+            }
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Suggests courses for an autocomplete box: the courses whose code starts with the query or whose title
+     * contains it (ignoring case and accents), best matches first. See CatalogIndex.suggest for the ranking.
+     * Answered from the catalog snapshot once loaded, before that the API results are ranked the same way.
+     *
+     * @param query the text typed so far, e.g. "calc" or "isis12".
+     * @param limit maximum number of suggestions, at most MAX_SUGGESTIONS.
+     * @return the suggestions, best first. Empty if the query is blank.
+     * @throws InvalidRequestException if the limit is not positive.
+     */
+
+    public List<CourseSuggestion> suggestCourses(String query, int limit) {
+        if (limit <= 0) {
+            throw new InvalidRequestException("Limit must be greater than zero");
+        }
+
+        String normalized = normalizeQuery(query);
+        if (normalized.isEmpty()) {
+            return new ArrayList<>(); // Nothing typed yet, suggesting the whole catalog would not help.
+        }
+
+        int bounded = Math.min(limit, MAX_SUGGESTIONS);
+        List<Course> courses;
+        if (catalogSnapshot.isLoaded()) {
+            courses = catalogSnapshot.suggest(normalized, bounded);
+        } else {
+            List<Course> found = getDomainCourses(normalized);
+            courses = new ArrayList<>();
+            for (int i : CatalogIndex.of(found).suggest(normalized, bounded)) {
+                courses.add(found.get(i));
+            }
+        }
+
+        List<CourseSuggestion> suggestions = new ArrayList<>(courses.size());
+        for (Course course : courses) {
+            suggestions.add(CourseSuggestion.of(course));
+        }
+        return suggestions;
+    }
+
+    /**
+     * Loads the whole offering of the term into the catalog snapshot, right after startup and then
+     * periodically, so the searches are answered from memory. If the API fails or returns nothing,
+     * the previous catalog is kept (and until the first load the searches keep going to the API).
+     */
+
+    @Scheduled(fixedDelayString = "${senehorario.catalog.snapshot.refresh-interval:10m}")
+    public void refreshCatalogSnapshot() {
+        if (!snapshotEnabled) {
+            return;
+        }
+
+        try {
+            ApiCourse[] raw = fetchFromApi(""); // An empty query returns every section of the term.
+            if (raw.length == 0) {
+                log.warn("The catalog API returned no sections, keeping the previous catalog");
+                return;
+            }
 
-        if (courses.isEmpty()) {
-            return new ArrayList<>(); // If no courses are found, return an empty list.
+            catalogSnapshot.replace(raw, toDomainCourses(raw));
+            log.info("Catalog snapshot loaded: {} courses, {} sections", catalogSnapshot.size(), raw.length);
+        } catch (RuntimeException e) {
+            log.warn("Could not refresh the catalog snapshot, keeping the previous catalog", e);
+        }
+    }
+
+    /**
+     * Finds the sections of several courses, fetching all of them from the API at the same time,
+     * so the whole request takes about as long as the slowest course instead of the sum of all of them.
+     *
+     * @param codes the course codes to search for, e.g. ISIS1204. Repeated codes are only fetched once.
+     * @return the sections of each course, in the order of the codes, ready to be used as schedule candidates.
+     * @throws InvalidRequestException if there are no codes, more than MAX_COURSE_CODES of them, or a course has no sections.
+     */
+
+    public List<List<Section>> findSectionsByCourseCodes(List<String> codes) {
+        Set<String> distinct = new LinkedHashSet<>(); // Keeps the order of the codes, without repeated courses.
+        if (codes != null) {
+            for (String code : codes) {
+                if (code != null && !code.isBlank()) {
+                    distinct.add(code.trim().toUpperCase(Locale.ROOT));
+                }
+            }
         }
 
-        // We want to return sections from the first course found with the given code.
-        // (The only one that should exist, actually)
-        Course course = courses.get(0); // Gets the first course from the list.
+        if (distinct.isEmpty()) {
+            throw new InvalidRequestException("At least one course code is required");
+        }
+        if (distinct.size() > MAX_COURSE_CODES) {
+            throw new InvalidRequestException("At most " + MAX_COURSE_CODES + " courses can be requested at once");
+        }
 
-        return course.getSections(); // Returns the list of sections associated with the course.
+        // All the requests are sent first, then each course is waited for in order.
+        List<CompletableFuture<List<Section>>> futures = new ArrayList<>(distinct.size());
+        for (String code : distinct) {
+            futures.add(CompletableFuture.supplyAsync(() -> findSectionsByCourseCode(code), courseFetchExecutor));
+        }
+
+        List<List<Section>> candidates = new ArrayList<>(distinct.size());
+        int i = 0;
+        for (String code : distinct) {
+            List<Section> sections;
+            try {
+                sections = futures.get(i++).join();
+            } catch (CompletionException e) {
+                futures.forEach(future -> future.cancel(false)); // The request fails anyway: courses still queued are skipped, the ones being fetched finish on their own.
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause; // Same exception as a single course lookup.
+                }
+                throw e;
+            }
+
+            if (sections.isEmpty()) {
+                throw new InvalidRequestException("No sections found for course " + code);
+            }
+            candidates.add(sections);
+        }
+        return candidates;
     }
 
     /**
@@ -192,7 +562,7 @@ public class CourseService {
      * @return the reordered name
      */
 
-    private String reorderProfessorName(String name) {
+    static String reorderProfessorName(String name) {
         if (name == null || name.trim().isEmpty()) return name; // If the name is null or empty, return it as is.
 
         String[] parts = name.trim().split("\\s+"); // Splits the name into parts based on whitespace.
@@ -214,7 +584,7 @@ public class CourseService {
         }
     }
 
-    private int parseIntSafe(String value) {
+    static int parseIntSafe(String value) {
         try {
             return Integer.parseInt(value);
         } catch (NumberFormatException e) {
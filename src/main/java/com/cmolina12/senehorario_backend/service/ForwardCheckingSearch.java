@@ -0,0 +1,108 @@
+package com.cmolina12.senehorario_backend.service;
+
+/**
+ * Schedule search with forward checking and most-constrained-course-first ordering.
+ *
+ * The search keeps the domain of every course (the groups of equivalent
+ * sections still compatible with everything chosen so far) as a bitset over
+ * the dense group indices. After each pick the domains are intersected with
+ * the compatibility row of the picked group, the branch is abandoned as soon
+ * as a course runs out of groups, and the next course to assign is the one
+ * with the fewest groups left.
+ *
+ * The sink always receives the groups in the order the courses were posted,
+ * but the schedules themselves come out in search order.
+ */
+
+final class ForwardCheckingSearch {
+
+    private final CompiledCandidates compiled;
+    private final long[][] domains; // Domains by depth, row 0 holds every group.
+    private final boolean[] assigned; // Courses that already have a section in the current schedule.
+    private final int[] chosen; // Dense index of the group chosen for each course.
+    private final SearchGuard guard; // Time budget and cancellation of this search.
+    private final ScheduleSink sink; // Receives every valid schedule found.
+
+    private ForwardCheckingSearch(CompiledCandidates compiled, SearchGuard guard, ScheduleSink sink) {
+        int courses = compiled.courseCount();
+        this.compiled = compiled;
+        this.domains = new long[courses + 1][CompiledCandidates.words(compiled.groupCount())];
+        this.assigned = new boolean[courses];
+        this.chosen = new int[courses];
+        this.guard = guard;
+        this.sink = sink;
+        Bits.set(domains[0], 0, compiled.groupCount());
+    }
+
+    /**
+     * Runs the search over the compiled candidates.
+     *
+     * @param compiled Candidate sections compiled with their dense indices and compatibility matrix.
+     * @param guard Time budget and cancellation of this search.
+     * @param sink Receives the groups of every valid schedule found, and may stop the search.
+     */
+
+    static void search(CompiledCandidates compiled, SearchGuard guard, ScheduleSink sink) {
+        for (int course = 0; course < compiled.courseCount(); course++) {
+            if (compiled.firstGroup(course) == compiled.endGroup(course)) {
+                return; // A course without sections can never be scheduled.
+            }
+        }
+        new ForwardCheckingSearch(compiled, guard, sink).assign(0);
+    }
+
+    // Returns false when the sink or the guard stopped the search.
+    private boolean assign(int depth) {
+        if (!guard.checkpoint()) {
+            return false;
+        }
+
+        if (depth == compiled.courseCount()) {
+            return sink.accept(chosen);
+        }
+
+        long[] domain = domains[depth];
+        int course = mostConstrainedCourse(domain);
+        assigned[course] = true;
+
+        int end = compiled.endGroup(course);
+        for (int group = Bits.next(domain, compiled.firstGroup(course), end); group != -1; group = Bits.next(domain, group + 1, end)) {
+            long[] next = domains[depth + 1];
+            Bits.and(domain, compiled.compatibleRow(group), next); // Only the groups compatible with the pick stay in the domains.
+
+            if (hasEmptyDomain(next)) continue; // Some course has nothing left, no need to go deeper.
+
+            chosen[course] = group;
+            if (!assign(depth + 1)) {
+                return false;
+            }
+        }
+
+        assigned[course] = false;
+        return true;
+    }
+
+    // Picks the unassigned course with the fewest groups left in its domain.
+    private int mostConstrainedCourse(long[] domain) {
+        int best = -1;
+        int bestSize = Integer.MAX_VALUE;
+        for (int course = 0; course < assigned.length; course++) {
+            if (assigned[course]) continue;
+            int size = Bits.count(domain, compiled.firstGroup(course), compiled.endGroup(course));
+            if (size < bestSize) {
+                best = course;
+                bestSize = size;
+            }
+        }
+        return best;
+    }
+
+    private boolean hasEmptyDomain(long[] domain) {
+        for (int course = 0; course < assigned.length; course++) {
+            if (!assigned[course] && Bits.isEmpty(domain, compiled.firstGroup(course), compiled.endGroup(course))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,16 @@
+package com.cmolina12.senehorario_backend.service;
+
+/**
+ * Rejects a request because of its own parameters, e.g. a malformed cursor or too many course codes.
+ *
+ * The controllers answer it with 400 Bad Request. Any other IllegalArgumentException,
+ * such as a NumberFormatException while reading the catalog API, is a bug on our side
+ * or in the upstream data, and stays a server error.
+ */
+
+public class InvalidRequestException extends IllegalArgumentException {
+
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+}
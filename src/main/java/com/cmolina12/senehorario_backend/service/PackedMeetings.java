@@ -0,0 +1,100 @@
+package com.cmolina12.senehorario_backend.service;
+
+import com.cmolina12.senehorario_backend.domain.Meeting;
+import com.cmolina12.senehorario_backend.domain.Section;
+import java.util.Arrays;
+
+/**
+ * Meetings of a section packed into primitive ints for the schedule solver.
+ *
+ * Each meeting is a pair of ints, its start and end in seconds since Monday
+ * 00:00 (the day is folded into the time, so meetings on different days never
+ * overlap), and the pairs are sorted by start. The solver keeps the pairs of
+ * all the sections of a request in one contiguous array, so a conflict check
+ * reads a few ints instead of following Meeting, DayOfWeek and LocalTime
+ * references. Times are kept to the second, like Meeting's JSON form.
+ */
+
+final class PackedMeetings {
+
+    static final int SECONDS_PER_DAY = 24 * 60 * 60;
+
+    private PackedMeetings() {
+    }
+
+    /**
+     * Packs the meetings of a section.
+     *
+     * @param section the section to pack.
+     * @return start and end of every meeting in seconds of the week, sorted by start.
+     */
+
+    static int[] pack(Section section) {
+        long[] meetings = new long[section.getMeetings().size()];
+        int m = 0;
+        for (Meeting meeting : section.getMeetings()) {
+            int dayOffset = (meeting.getDay().getValue() - 1) * SECONDS_PER_DAY;
+            long start = dayOffset + meeting.getStart().toSecondOfDay();
+            long end = dayOffset + meeting.getEnd().toSecondOfDay();
+            meetings[m++] = interval(start, end);
+        }
+        return sorted(meetings);
+    }
+
+    /**
+     * @param start start of the interval, in seconds of the week.
+     * @param end end of the interval, in seconds of the week.
+     * @return the interval as one long, for sorted().
+     */
+
+    static long interval(long start, long end) {
+        return start << 32 | end; // Both are non-negative, so sorting the longs sorts by start.
+    }
+
+    /**
+     * Packs intervals built with interval() into the int pairs used by overlap(), sorted by start.
+     *
+     * @param intervals the intervals, the array is sorted in place.
+     * @return start and end of every interval, sorted by start.
+     */
+
+    static int[] sorted(long[] intervals) {
+        Arrays.sort(intervals);
+
+        int[] packed = new int[intervals.length * 2];
+        for (int i = 0; i < intervals.length; i++) {
+            packed[2 * i] = (int) (intervals[i] >>> 32);
+            packed[2 * i + 1] = (int) intervals[i];
+        }
+        return packed;
+    }
+
+    /**
+     * Checks whether two packed sections have overlapping meetings, with the same rule as
+     * ScheduleService.conflict: one starts before the other ends and ends after the other starts.
+     *
+     * @param a array holding the meetings of the first section.
+     * @param aFrom index of the first int of the first section.
+     * @param aTo index after the last int of the first section.
+     * @param b array holding the meetings of the second section.
+     * @param bFrom index of the first int of the second section.
+     * @param bTo index after the last int of the second section.
+     * @return true if there is a conflict, false otherwise.
+     */
+
+    static boolean overlap(int[] a, int aFrom, int aTo, int[] b, int bFrom, int bTo) {
+        for (int i = aFrom; i < aTo; i += 2) {
+            int start = a[i];
+            int end = a[i + 1];
+            for (int j = bFrom; j < bTo; j += 2) {
+                if (b[j] >= end) {
+                    break; // The meetings of b are sorted by start, none of the next ones can start before this one ends.
+                }
+                if (start < b[j + 1]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,225 @@
+package com.cmolina12.senehorario_backend.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Backtracking search split across cores with fork/join.
+ *
+ * The top levels of the search tree are split into one task per compatible
+ * group, and each task runs the sequential backtracking once its subtree is
+ * smaller than the threshold. The first subtask of a task runs on the same
+ * thread straight into the task's output, while the others run ahead on the
+ * pool into their own bounded buffer. The buffers are then drained in group
+ * order, so the schedules reach the sink as they are found and in exactly the
+ * same order as the sequential search. A subtask that no worker has started
+ * yet is run by the thread that drains it, so the search never waits for a
+ * free worker.
+ *
+ * When the sink stops the search, or the guard trips, every task stops at its
+ * next node and the buffers are dropped.
+ */
+
+final class ParallelSearch {
+
+    static final long SEQUENTIAL_THRESHOLD = 2_048; // Subtrees with fewer combinations than this are not split.
+    static final int BUFFER_SIZE = 1_024; // Schedules a task may find ahead of the sink before it waits.
+
+    private static final int[] DONE = new int[0]; // Marks the end of the schedules of a buffer.
+    private static final long WAIT_MILLIS = 10; // How often a waiting task checks whether the search was stopped.
+
+    private ParallelSearch() {
+    }
+
+    // Dedicated pool, so long searches do not starve the common pool used by the rest of the application.
+    private static final class PoolHolder {
+        static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Runs the search over the compiled candidates, and hands the schedules to the sink as they are found.
+     * The sink is called on the calling thread.
+     *
+     * @param compiled Candidate sections compiled with their dense indices and compatibility matrix.
+     * @param guard Time budget and cancellation shared by all the tasks.
+     * @param sink Receives the groups of every valid schedule, in the order of the sequential search, and may stop the search.
+     */
+
+    static void search(CompiledCandidates compiled, SearchGuard guard, ScheduleSink sink) {
+        int courses = compiled.courseCount();
+
+        // combinations[i] is the number of group combinations of courses i..n-1, ignoring conflicts.
+        long[] combinations = new long[courses + 1];
+        combinations[courses] = 1;
+        for (int course = courses - 1; course >= 0; course--) {
+            long size = compiled.endGroup(course) - compiled.firstGroup(course);
+            combinations[course] = size == 0 ? 0 : Math.min(Long.MAX_VALUE / size, combinations[course + 1]) * size; // Saturates instead of overflowing.
+        }
+
+        Search search = new Search(compiled, guard, combinations);
+        new SearchTask(search, new int[courses], 0).drainInto(chosen -> {
+            if (sink.accept(chosen)) {
+                return true;
+            }
+            search.stopped.set(true); // The tasks running ahead stop at their next node.
+            return false;
+        });
+        search.stopped.set(true); // Tasks still queued on the pool return at once.
+
+        if (search.failure instanceof Error error) {
+            throw error;
+        }
+        if (search.failure != null) {
+            throw (RuntimeException) search.failure;
+        }
+    }
+
+    // State shared by all the tasks of one search.
+    private static final class Search {
+
+        final CompiledCandidates compiled;
+        final SearchGuard guard;
+        final long[] combinations;
+        final AtomicBoolean stopped = new AtomicBoolean(); // Set when the sink stops the search, or a task fails.
+        volatile Throwable failure; // First error thrown by a task running on the pool.
+
+        Search(CompiledCandidates compiled, SearchGuard guard, long[] combinations) {
+            this.compiled = compiled;
+            this.guard = guard;
+            this.combinations = combinations;
+        }
+
+        boolean isStopped() {
+            return stopped.get() || guard.getTruncationReason() != null;
+        }
+    }
+
+    private static final class SearchTask extends RecursiveAction {
+
+        private final Search search;
+        private final int[] prefix; // Groups chosen for the courses before depth.
+        private final int depth;
+        private final AtomicBoolean claimed = new AtomicBoolean(); // Set by the first thread that runs the subtree, a worker or the one draining it.
+        private final BlockingQueue<int[]> buffer = new LinkedBlockingQueue<>(BUFFER_SIZE); // Only used when a worker runs the subtree.
+
+        SearchTask(Search search, int[] prefix, int depth) {
+            this.search = search;
+            this.prefix = prefix;
+            this.depth = depth;
+        }
+
+        // Runs the subtree on a worker, ahead of the thread that will drain it.
+        @Override
+        protected void compute() {
+            if (!claimed.compareAndSet(false, true)) {
+                return; // Already run by the thread draining it.
+            }
+            try {
+                if (explore(this::put)) {
+                    put(DONE);
+                }
+            } catch (RuntimeException | Error e) {
+                if (search.failure == null) {
+                    search.failure = e;
+                }
+                search.stopped.set(true);
+                throw e;
+            }
+        }
+
+        /**
+         * Hands the schedules of the subtree to out, in search order: runs the subtree on this thread
+         * if no worker has started it, or replays its buffer otherwise.
+         *
+         * @return true if the subtree is done, false if the search was stopped.
+         */
+
+        boolean drainInto(ScheduleSink out) {
+            if (claimed.compareAndSet(false, true)) {
+                return explore(out);
+            }
+
+            try {
+                while (true) {
+                    int[] chosen = buffer.poll(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+                    if (chosen == DONE) {
+                        return true;
+                    }
+                    if (chosen == null) {
+                        if (search.isStopped()) {
+                            return false; // The worker gave up without finishing the subtree.
+                        }
+                    } else if (!out.accept(chosen)) {
+                        return false;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                search.stopped.set(true);
+                return false;
+            }
+        }
+
+        private boolean explore(ScheduleSink out) {
+            if (search.isStopped() || !search.guard.checkpoint()) {
+                return false; // Out of time or stopped, the subtree is not explored.
+            }
+
+            CompiledCandidates compiled = search.compiled;
+            if (search.combinations[depth] < SEQUENTIAL_THRESHOLD) {
+                return ScheduleService.backtrack(compiled, depth, prefix, null, search.guard, chosen -> !search.stopped.get() && out.accept(chosen));
+            }
+
+            List<SearchTask> subtasks = new ArrayList<>();
+            for (int group = compiled.firstGroup(depth); group < compiled.endGroup(depth); group++) {
+                if (compatibleWithPrefix(group)) {
+                    int[] next = prefix.clone();
+                    next[depth] = group;
+                    subtasks.add(new SearchTask(search, next, depth + 1));
+                }
+            }
+
+            for (int i = 1; i < subtasks.size(); i++) {
+                PoolHolder.POOL.execute(subtasks.get(i)); // Queued in group order, the first one is run right here.
+            }
+            for (SearchTask subtask : subtasks) {
+                if (!subtask.drainInto(out)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Waits while the buffer is full, the thread draining it has not reached this subtree yet.
+        private boolean put(int[] chosen) {
+            int[] copy = chosen == DONE ? DONE : chosen.clone(); // The search reuses the array.
+            try {
+                while (!buffer.offer(copy, WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (search.isStopped()) {
+                        return false;
+                    }
+                }
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                search.stopped.set(true);
+                return false;
+            }
+        }
+
+        private boolean compatibleWithPrefix(int group) {
+            for (int j = 0; j < depth; j++) {
+                if (!search.compiled.compatible(prefix[j], group)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
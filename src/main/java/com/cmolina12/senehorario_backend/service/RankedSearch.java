@@ -0,0 +1,207 @@
+package com.cmolina12.senehorario_backend.service;
+
+import com.cmolina12.senehorario_backend.domain.Section;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Branch-and-bound search for the K best schedules.
+ *
+ * Schedules are compared by their criteria scores in priority order (the second
+ * criterion only breaks ties of the first one, and so on); remaining ties go to
+ * the schedule found first. The search keeps the K best schedules in a bounded
+ * priority queue whose head is the worst of them, and once the queue is full it
+ * skips every branch whose upper bounds cannot beat that head.
+ *
+ * Equivalent sections can score differently (seats, for example), so the
+ * candidates must be compiled without collapsing them: every group is then a
+ * single section. The only exception is the RANKED search mode, which orders
+ * every schedule by criteria that only look at the meeting times.
+ */
+
+final class RankedSearch {
+
+    // Criteria of the RANKED search mode. They only look at the meeting times, so every
+    // section of a group of equivalent sections scores like its representative.
+    static final List<RankingCriterion> ENGINE_CRITERIA = List.of(
+        RankingCriterion.MOST_FREE_DAYS,
+        RankingCriterion.FEWEST_GAPS,
+        RankingCriterion.NO_EARLY_MORNINGS
+    );
+
+    private final CompiledCandidates compiled;
+    private final List<? extends ScheduleCriterion> criteria;
+    private final int k;
+    private final SearchGuard guard; // Time budget and cancellation of this search.
+    private final PriorityQueue<Ranked> best; // Worst of the K best schedules at the head.
+    private final List<Section> partial = new ArrayList<>();
+    private final int[] chosen;
+    private long found; // Number of schedules found, used to break ties in search order.
+
+    private RankedSearch(CompiledCandidates compiled, List<? extends ScheduleCriterion> criteria, int k, SearchGuard guard) {
+        this.compiled = compiled;
+        this.criteria = criteria;
+        this.k = k;
+        this.guard = guard;
+        this.best = new PriorityQueue<>(Math.min(k, 1024) + 1, WORST_FIRST);
+        this.chosen = new int[compiled.courseCount()];
+    }
+
+    /**
+     * Finds the K best schedules of the compiled candidates.
+     *
+     * @param compiled Candidate sections compiled one section per group, with their dense indices and compatibility matrix.
+     * @param criteria Scoring criteria, in priority order.
+     * @param k Maximum number of schedules to return.
+     * @param guard Time budget and cancellation of this search. If it stops the search,
+     *              the best of the schedules found so far are returned.
+     * @return the best schedules, best first.
+     */
+
+    static List<List<Section>> search(CompiledCandidates compiled, List<? extends ScheduleCriterion> criteria, int k, SearchGuard guard) {
+        List<int[]> ranked = rank(compiled, criteria, k, guard);
+
+        List<List<Section>> schedules = new ArrayList<>(ranked.size());
+        for (int[] groups : ranked) {
+            List<Section> schedule = new ArrayList<>(groups.length);
+            for (int group : groups) {
+                schedule.add(compiled.representative(group));
+            }
+            schedules.add(schedule);
+        }
+        return schedules;
+    }
+
+    /**
+     * Runs the search as an engine: the best schedules according to ENGINE_CRITERIA are handed to the
+     * sink, best first, once the search is done. Only as many schedules as the result cap of the guard
+     * are kept, plus one so the guard can tell the list was truncated, so the guard must have a cap.
+     *
+     * @param compiled Candidate sections compiled with their dense indices and compatibility matrix.
+     * @param guard Time budget, result cap and cancellation of this search. If it stops the search,
+     *              the best of the schedules found so far are still handed over.
+     * @param sink Receives the groups of the best schedules, and may stop the hand over.
+     * @throws InvalidRequestException if the guard has no result cap.
+     */
+
+    static void search(CompiledCandidates compiled, SearchGuard guard, ScheduleSink sink) {
+        if (!guard.hasResultCap()) {
+            throw new InvalidRequestException("The RANKED mode needs a result cap");
+        }
+
+        int k = (int) Math.min(guard.getMaxResults() + 1, Integer.MAX_VALUE);
+        for (int[] groups : rank(compiled, ENGINE_CRITERIA, k, guard)) {
+            if (!sink.accept(groups)) {
+                return;
+            }
+        }
+    }
+
+    // Returns the groups of the K best schedules, best first.
+    private static List<int[]> rank(CompiledCandidates compiled, List<? extends ScheduleCriterion> criteria, int k, SearchGuard guard) {
+        RankedSearch search = new RankedSearch(compiled, criteria, k, guard);
+        search.backtrack(0);
+
+        List<Ranked> ranked = new ArrayList<>(search.best);
+        ranked.sort(WORST_FIRST.reversed());
+
+        List<int[]> groups = new ArrayList<>(ranked.size());
+        for (Ranked r : ranked) {
+            groups.add(r.groups);
+        }
+        return groups;
+    }
+
+    // Returns false when the guard stopped the search.
+    private boolean backtrack(int idx) {
+        if (!guard.checkpoint()) {
+            return false;
+        }
+
+        if (idx == compiled.courseCount()) {
+            offer(new Ranked(scores(), found++, chosen.clone()));
+            return true;
+        }
+
+        if (best.size() == k && !canBeat(best.peek().scores, idx)) {
+            return true; // No completion of this branch can enter the K best.
+        }
+
+        for (int group = compiled.firstGroup(idx); group < compiled.endGroup(idx); group++) {
+            boolean hasConflict = false;
+            for (int j = 0; j < idx; j++) {
+                if (!compiled.compatible(chosen[j], group)) {
+                    hasConflict = true;
+                    break;
+                }
+            }
+
+            if (hasConflict) continue;
+
+            chosen[idx] = group;
+            partial.add(compiled.representative(group));
+            boolean keepGoing = backtrack(idx + 1);
+            partial.remove(partial.size() - 1);
+            if (!keepGoing) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void offer(Ranked candidate) {
+        if (best.size() < k) {
+            best.add(candidate);
+        } else if (WORST_FIRST.compare(candidate, best.peek()) > 0) {
+            best.poll();
+            best.add(candidate);
+        }
+    }
+
+    private double[] scores() {
+        double[] scores = new double[criteria.size()];
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = criteria.get(i).score(partial);
+        }
+        return scores;
+    }
+
+    // Compares the upper bounds of the branch with the worst kept schedule, in priority order.
+    // Since a later schedule loses ties, the branch must be strictly better to be worth exploring.
+    private boolean canBeat(double[] worst, int idx) {
+        List<List<Section>> remaining = compiled.getCandidates().subList(idx, compiled.courseCount());
+        for (int i = 0; i < worst.length; i++) {
+            int cmp = Double.compare(criteria.get(i).upperBound(partial, remaining), worst[i]);
+            if (cmp != 0) {
+                return cmp > 0;
+            }
+        }
+        return false;
+    }
+
+    // Lower scores first, and among equal scores the schedule found later first.
+    private static final Comparator<Ranked> WORST_FIRST = (a, b) -> {
+        for (int i = 0; i < a.scores.length; i++) {
+            int cmp = Double.compare(a.scores[i], b.scores[i]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Long.compare(b.order, a.order);
+    };
+
+    private static final class Ranked {
+
+        private final double[] scores;
+        private final long order;
+        private final int[] groups; // Dense group index chosen for each course.
+
+        Ranked(double[] scores, long order, int[] groups) {
+            this.scores = scores;
+            this.order = order;
+            this.groups = groups;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.cmolina12.senehorario_backend.service;
+
+import com.cmolina12.senehorario_backend.domain.Meeting;
+import com.cmolina12.senehorario_backend.domain.Section;
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Built-in criteria to rank schedules.
+ */
+
+public enum RankingCriterion implements ScheduleCriterion {
+
+    /**
+     * Fewer idle minutes between classes of the same day. Scored as minus the idle minutes.
+     */
+    FEWEST_GAPS {
+        @Override
+        public double score(List<Section> schedule) {
+            List<Meeting> meetings = new ArrayList<>();
+            for (Section section : schedule) {
+                meetings.addAll(section.getMeetings());
+            }
+            meetings.sort(Comparator.comparing(Meeting::getDay).thenComparing(Meeting::getStart));
+
+            long gapMinutes = 0;
+            for (int i = 1; i < meetings.size(); i++) {
+                Meeting previous = meetings.get(i - 1);
+                Meeting next = meetings.get(i);
+                if (previous.getDay() == next.getDay() && next.getStart().isAfter(previous.getEnd())) {
+                    gapMinutes += (next.getStart().toSecondOfDay() - previous.getEnd().toSecondOfDay()) / 60;
+                }
+            }
+            return -gapMinutes;
+        }
+
+        @Override
+        public double upperBound(List<Section> partial, List<List<Section>> remaining) {
+            return 0; // Later sections may fill the current gaps, so nothing better than no gaps can be promised.
+        }
+    },
+
+    /**
+     * Fewer classes starting before 8:00. Scored as minus the number of early meetings.
+     */
+    NO_EARLY_MORNINGS {
+        @Override
+        public double score(List<Section> schedule) {
+            int early = 0;
+            for (Section section : schedule) {
+                early += earlyMeetings(section);
+            }
+            return -early;
+        }
+
+        @Override
+        public double upperBound(List<Section> partial, List<List<Section>> remaining) {
+            double bound = score(partial);
+            for (List<Section> course : remaining) {
+                int fewest = Integer.MAX_VALUE;
+                for (Section section : course) {
+                    fewest = Math.min(fewest, earlyMeetings(section));
+                }
+                bound -= course.isEmpty() ? 0 : fewest; // Each remaining course adds at least its least early section.
+            }
+            return bound;
+        }
+    },
+
+    /**
+     * More weekdays (Monday to Saturday) without classes. Scored as the number of free days.
+     */
+    MOST_FREE_DAYS {
+        @Override
+        public double score(List<Section> schedule) {
+            Set<DayOfWeek> busy = EnumSet.noneOf(DayOfWeek.class);
+            for (Section section : schedule) {
+                for (Meeting meeting : section.getMeetings()) {
+                    busy.add(meeting.getDay());
+                }
+            }
+            busy.remove(DayOfWeek.SUNDAY);
+            return 6 - busy.size();
+        }
+
+        @Override
+        public double upperBound(List<Section> partial, List<List<Section>> remaining) {
+            return score(partial); // Adding sections can only take free days away.
+        }
+    },
+
+    /**
+     * More available seats, so the registration is more likely to succeed. Scored as the sum of available seats.
+     */
+    MOST_AVAILABLE_SEATS {
+        @Override
+        public double score(List<Section> schedule) {
+            int seats = 0;
+            for (Section section : schedule) {
+                seats += section.getAvailableSeats();
+            }
+            return seats;
+        }
+
+        @Override
+        public double upperBound(List<Section> partial, List<List<Section>> remaining) {
+            double bound = score(partial);
+            for (List<Section> course : remaining) {
+                int most = 0;
+                for (Section section : course) {
+                    most = Math.max(most, section.getAvailableSeats());
+                }
+                bound += most; // Each remaining course adds at most its section with the most seats.
+            }
+            return bound;
+        }
+    };
+
+    static final LocalTime EARLY_MORNING = LocalTime.of(8, 0); // Meetings starting before this time are early.
+
+    private static int earlyMeetings(Section section) {
+        int early = 0;
+        for (Meeting meeting : section.getMeetings()) {
+            if (meeting.getStart().isBefore(EARLY_MORNING)) {
+                early++;
+            }
+        }
+        return early;
+    }
+}
@@ -0,0 +1,69 @@
+package com.cmolina12.senehorario_backend.service;
+
+/**
+ * Plain recursive backtracking, kept as the reference the other engines are checked against.
+ *
+ * Courses are visited in the order they were posted and every candidate group
+ * is compared with the groups already chosen using ScheduleService.conflict on
+ * the Meeting objects, never through the compatibility matrix. ScheduleService
+ * compiles its candidates with one group per section and the constraints
+ * checked on the Meeting objects (see SectionFilter.ofMeetings), so neither
+ * the packed meetings, the grouping of equivalent sections nor the masking of
+ * the constraints decide what it returns.
+ */
+
+final class ReferenceSearch {
+
+    private final CompiledCandidates compiled;
+    private final int[] chosen; // Dense index of the group chosen for each course.
+    private final SearchGuard guard; // Time budget and cancellation of this search.
+    private final ScheduleSink sink; // Receives every valid schedule found.
+
+    private ReferenceSearch(CompiledCandidates compiled, SearchGuard guard, ScheduleSink sink) {
+        this.compiled = compiled;
+        this.chosen = new int[compiled.courseCount()];
+        this.guard = guard;
+        this.sink = sink;
+    }
+
+    /**
+     * Runs the search over the compiled candidates.
+     *
+     * @param compiled Candidate sections compiled with their dense indices.
+     * @param guard Time budget and cancellation of this search.
+     * @param sink Receives the groups of every valid schedule found, and may stop the search.
+     */
+
+    static void search(CompiledCandidates compiled, SearchGuard guard, ScheduleSink sink) {
+        new ReferenceSearch(compiled, guard, sink).backtrack(0);
+    }
+
+    // Returns false when the sink or the guard stopped the search.
+    private boolean backtrack(int idx) {
+        if (!guard.checkpoint()) {
+            return false;
+        }
+
+        if (idx == compiled.courseCount()) {
+            return sink.accept(chosen);
+        }
+
+        for (int group = compiled.firstGroup(idx); group < compiled.endGroup(idx); group++) {
+            boolean hasConflict = false;
+            for (int j = 0; j < idx; j++) {
+                if (ScheduleService.conflict(compiled.representative(chosen[j]), compiled.representative(group))) {
+                    hasConflict = true;
+                    break;
+                }
+            }
+
+            if (hasConflict) continue;
+
+            chosen[idx] = group;
+            if (!backtrack(idx + 1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,123 @@
+package com.cmolina12.senehorario_backend.service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counts the valid schedules without building them.
+ *
+ * The state of the search at course i is the set of groups of courses i..n-1
+ * that are still compatible with everything chosen so far. Two branches that
+ * reach course i with the same set have the same number of completions, so the
+ * count is memoized on (course index, remaining groups). The remaining set
+ * captures everything the chosen sections rule out, whatever their meeting
+ * times. Every group of equivalent sections multiplies the completions by its
+ * size.
+ */
+
+final class ScheduleCounter {
+
+    static final int MAX_MEMO_ENTRIES = 1 << 20; // Bounds the memory of the memo on huge inputs.
+
+    private final CompiledCandidates compiled;
+    private final SearchGuard guard; // Time budget and cancellation of this count.
+    private final long[][] domains; // Remaining groups by depth, row 0 holds every group.
+    private final Map<State, Long> memo = new HashMap<>();
+
+    private boolean stopped; // Set once the guard stops the count, the partial totals are then not memoized.
+
+    private ScheduleCounter(CompiledCandidates compiled, SearchGuard guard) {
+        this.compiled = compiled;
+        this.guard = guard;
+        this.domains = new long[compiled.courseCount() + 1][CompiledCandidates.words(compiled.groupCount())];
+        Bits.set(domains[0], 0, compiled.groupCount());
+    }
+
+    /**
+     * Counts the valid schedules of the compiled candidates.
+     *
+     * @param compiled Candidate sections compiled with their dense indices and compatibility matrix.
+     * @param guard Time budget and cancellation of this count. If it stops the count,
+     *              the schedules counted so far are returned, a lower bound of the total.
+     * @return the number of valid schedules, saturated at Long.MAX_VALUE.
+     */
+
+    static long count(CompiledCandidates compiled, SearchGuard guard) {
+        return new ScheduleCounter(compiled, guard).count(0);
+    }
+
+    private long count(int idx) {
+        if (idx == compiled.courseCount()) {
+            return 1;
+        }
+
+        if (stopped || !guard.checkpoint()) {
+            stopped = true; // Out of time or cancelled.
+            return 0;
+        }
+
+        long[] domain = domains[idx];
+        State state = new State(idx, domain, compiled.firstGroup(idx));
+        Long known = memo.get(state);
+        if (known != null) {
+            return known;
+        }
+
+        long total = 0;
+        int end = compiled.endGroup(idx);
+        for (int group = Bits.next(domain, compiled.firstGroup(idx), end); group != -1; group = Bits.next(domain, group + 1, end)) {
+            long[] next = domains[idx + 1];
+            Bits.and(domain, compiled.compatibleRow(group), next); // The later courses keep only the groups compatible with this one.
+
+            long completions = count(idx + 1);
+            int size = compiled.groupSize(group); // Each section of the group completes the same way.
+            if (completions > (Long.MAX_VALUE - total) / size) {
+                total = Long.MAX_VALUE; // Saturate instead of overflowing.
+            } else {
+                total += completions * size;
+            }
+
+            if (stopped) {
+                return total; // Only part of the completions, not memoized.
+            }
+        }
+
+        if (memo.size() < MAX_MEMO_ENTRIES) {
+            memo.put(state, total);
+        }
+        return total;
+    }
+
+    // Memo key: the course index and a copy of the remaining groups from that course on.
+    private static final class State {
+
+        private final int course;
+        private final long[] bits;
+        private final int hash;
+
+        State(int course, long[] domain, int firstGroup) {
+            int firstWord = firstGroup >>> 6;
+            this.course = course;
+            this.bits = Arrays.copyOfRange(domain, firstWord, domain.length);
+            if (bits.length > 0) {
+                bits[0] &= -1L << firstGroup; // Ignore the groups of the courses already chosen.
+            }
+            this.hash = 31 * course + Arrays.hashCode(bits);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof State)) {
+                return false;
+            }
+            State other = (State) o;
+            return course == other.course && Arrays.equals(bits, other.bits);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.cmolina12.senehorario_backend.service;
+
+import com.cmolina12.senehorario_backend.domain.Section;
+import java.util.List;
+
+/**
+ * A scoring criterion used to rank schedules, higher scores are better.
+ *
+ * The ranked search uses the upper bound to prune branches that cannot beat the
+ * schedules it already has, so the bound must never be lower than the score of
+ * any schedule that completes the partial one.
+ */
+
+public interface ScheduleCriterion {
+
+    /**
+     * Scores a complete schedule.
+     *
+     * @param schedule the sections of the schedule, one per course.
+     * @return the score of the schedule, higher is better.
+     */
+
+    double score(List<Section> schedule);
+
+    /**
+     * Gives an optimistic score for every schedule that starts with the partial one.
+     *
+     * @param partial the sections chosen for the first courses.
+     * @param remaining the candidate sections of the courses not chosen yet.
+     * @return a value greater than or equal to the score of any completion, infinity if unknown.
+     */
+
+    default double upperBound(List<Section> partial, List<List<Section>> remaining) {
+        return Double.POSITIVE_INFINITY;
+    }
+}
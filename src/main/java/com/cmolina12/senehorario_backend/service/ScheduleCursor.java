@@ -0,0 +1,142 @@
+package com.cmolina12.senehorario_backend.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Encodes the position of the backtracking search as an opaque cursor.
+ *
+ * The position is the index of the section chosen for each course (relative
+ * to its course, so it does not depend on how the sections are grouped or
+ * numbered), written as dot-separated numbers and encoded with URL-safe Base64.
+ */
+
+final class ScheduleCursor {
+
+    private ScheduleCursor() {
+    }
+
+    /**
+     * Encodes a search position.
+     *
+     * @param chosen flat index of the section chosen for each course.
+     * @param compiled the compiled candidates the indices belong to.
+     * @return the opaque cursor.
+     */
+
+    static String encode(int[] chosen, CompiledCandidates compiled) {
+        StringBuilder position = new StringBuilder();
+        for (int course = 0; course < chosen.length; course++) {
+            if (course > 0) {
+                position.append('.');
+            }
+            position.append(chosen[course] - compiled.firstFlat(course));
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Encodes the position that follows a schedule in the search order: the next combination of the
+     * members of its groups, or else the next combination of groups, which may not be valid. The search
+     * resumes at the first valid schedule from that position on.
+     *
+     * @param flat flat index of the section chosen for each course in the schedule.
+     * @param compiled the compiled candidates the indices belong to.
+     * @return the opaque cursor, or null if no position follows the schedule.
+     */
+
+    static String encodeAfter(int[] flat, CompiledCandidates compiled) {
+        int courses = flat.length;
+        int[] groups = new int[courses];
+        int[] ranks = new int[courses];
+        for (int course = 0; course < courses; course++) {
+            groups[course] = compiled.groupOf(flat[course]);
+            ranks[course] = compiled.rankOf(flat[course]);
+        }
+
+        if (!advance(ranks, course -> 0, course -> compiled.groupSize(groups[course]))) {
+            // Every combination of the members was handed over, move on to the next combination of groups.
+            if (!advance(groups, compiled::firstGroup, compiled::endGroup)) {
+                return null;
+            }
+        }
+
+        int[] next = new int[courses];
+        for (int course = 0; course < courses; course++) {
+            next[course] = compiled.member(groups[course], ranks[course]);
+        }
+        return encode(next, compiled);
+    }
+
+    /**
+     * Encodes the position where the search starts.
+     *
+     * @param compiled the compiled candidates of the search.
+     * @return the opaque cursor, or null if a course has no section left.
+     */
+
+    static String encodeStart(CompiledCandidates compiled) {
+        int[] first = new int[compiled.courseCount()];
+        for (int course = 0; course < first.length; course++) {
+            if (compiled.firstGroup(course) == compiled.endGroup(course)) {
+                return null;
+            }
+            first[course] = compiled.member(compiled.firstGroup(course), 0);
+        }
+        return encode(first, compiled);
+    }
+
+    // Advances the positions like an odometer, the last course changing fastest. Returns false after the last position.
+    private static boolean advance(int[] positions, IntUnaryOperator first, IntUnaryOperator end) {
+        for (int course = positions.length - 1; course >= 0; course--) {
+            if (positions[course] + 1 < end.applyAsInt(course)) {
+                positions[course]++;
+                return true;
+            }
+            positions[course] = first.applyAsInt(course);
+        }
+        return false;
+    }
+
+    /**
+     * Decodes a cursor into the flat indices of the position to resume from.
+     *
+     * @param cursor the cursor returned with a previous page.
+     * @param compiled the compiled candidates of the current request.
+     * @return flat index of the section to resume from for each course.
+     */
+
+    static int[] decode(String cursor, CompiledCandidates compiled) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII).split("\\.", -1);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException("Invalid cursor: " + cursor);
+        }
+
+        if (parts.length != compiled.courseCount()) {
+            throw new InvalidRequestException("Cursor does not match the number of courses");
+        }
+
+        int[] resume = new int[parts.length];
+        for (int course = 0; course < parts.length; course++) {
+            int index;
+            try {
+                index = Integer.parseInt(parts[course]);
+            } catch (NumberFormatException e) {
+                throw new InvalidRequestException("Invalid cursor: " + cursor);
+            }
+
+            int size = compiled.endFlat(course) - compiled.firstFlat(course);
+            if (index < 0 || index >= size) {
+                throw new InvalidRequestException("Cursor does not match the sections of course " + course);
+            }
+            resume[course] = compiled.firstFlat(course) + index;
+            if (compiled.groupOf(resume[course]) < 0) {
+                throw new InvalidRequestException("Cursor does not match the constraints of course " + course);
+            }
+        }
+        return resume;
+    }
+}
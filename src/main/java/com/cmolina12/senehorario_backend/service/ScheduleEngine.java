@@ -0,0 +1,24 @@
+package com.cmolina12.senehorario_backend.service;
+
+/**
+ * A schedule search algorithm over compiled candidates.
+ *
+ * Every engine must hand the sink exactly the same combinations of groups,
+ * once each; only the order may differ between engines. Each SearchMode holds
+ * its engine, so a new engine is added by adding a mode, and
+ * ScheduleEngineConformanceTest checks it against the reference one.
+ */
+
+@FunctionalInterface
+interface ScheduleEngine {
+
+    /**
+     * Runs the search.
+     *
+     * @param compiled Candidate sections compiled with their dense indices and compatibility matrix.
+     * @param guard Time budget and cancellation of this search.
+     * @param sink Receives the dense group indices of every valid combination found, in course order, and may stop the search.
+     */
+
+    void search(CompiledCandidates compiled, SearchGuard guard, ScheduleSink sink);
+}
@@ -1,28 +1,407 @@
 package com.cmolina12.senehorario_backend.service;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import com.cmolina12.senehorario_backend.domain.CompactScheduleResult;
+import com.cmolina12.senehorario_backend.domain.GroupedScheduleResult;
 import com.cmolina12.senehorario_backend.domain.Meeting;
+import com.cmolina12.senehorario_backend.domain.SchedulePage;
+import com.cmolina12.senehorario_backend.domain.ScheduleConstraints;
+import com.cmolina12.senehorario_backend.domain.ScheduleResult;
 import com.cmolina12.senehorario_backend.domain.Section;
+import com.cmolina12.senehorario_backend.domain.TruncationReason;
 
 
 
 @Service
 public class ScheduleService {
 
+    private SearchMode defaultMode = SearchMode.BACKTRACKING; // Search mode used when the caller does not choose one.
+
+    /**
+     * Sets the search mode used when the caller does not choose one. RANKED is rejected, so the application
+     * does not start with it: it needs a result cap and cannot stream, so it can only be chosen per request.
+     *
+     * @param defaultMode the configured senehorario.schedules.mode.
+     * @throws IllegalStateException if the mode is RANKED.
+     */
+
+    @Value("${senehorario.schedules.mode:BACKTRACKING}")
+    void setDefaultMode(SearchMode defaultMode) {
+        if (defaultMode == SearchMode.RANKED) {
+            throw new IllegalStateException("senehorario.schedules.mode cannot be RANKED, it needs a result cap and cannot stream: choose it per request with mode=RANKED");
+        }
+        this.defaultMode = defaultMode;
+    }
+
     /**
      * This method generates all possible schedules based on the provided candidates.
-     * It uses backtracking to explore all combinations of sections from different courses.
+     * It uses the configured search mode (senehorario.schedules.mode, BACKTRACKING by default)
+     * to explore all combinations of sections from different courses.
      *
      * @param candidates List of lists of Section objects representing the courses and their sections.
      * @return List of lists of Section objects representing all valid schedules.
      */
 
     public List<List<Section>> generateAllSchedules(List<List<Section>> candidates) {
-       List<List<Section>> results = new ArrayList<>();
-        backtrack(candidates, 0, new ArrayList<>(), results);
-        return results;
+        return generateAllSchedules(candidates, defaultMode);
+    }
+
+    /**
+     * This method generates all possible schedules based on the provided candidates using the given search mode.
+     * All modes return the same schedules, only the order in which they are found may differ.
+     * The RANKED mode is rejected, it needs a result cap (see generateSchedules).
+     *
+     * @param candidates List of lists of Section objects representing the courses and their sections.
+     * @param mode Search strategy used to explore the combinations.
+     * @return List of lists of Section objects representing all valid schedules.
+     */
+
+    public List<List<Section>> generateAllSchedules(List<List<Section>> candidates, SearchMode mode) {
+        return generateSchedules(candidates, mode, SearchGuard.unlimited()).getSchedules();
+    }
+
+    /**
+     * This method generates the schedules until the search finishes or the guard stops it
+     * (time budget exhausted, result cap reached or cancelled), keeping what was found so far.
+     *
+     * @param candidates List of lists of Section objects representing the courses and their sections.
+     * @param mode Search strategy used to explore the combinations.
+     * @param guard Time budget, result cap and cancellation of this search.
+     * @return The schedules found, and whether the list is complete or why it was truncated.
+     */
+
+    public ScheduleResult generateSchedules(List<List<Section>> candidates, SearchMode mode, SearchGuard guard) {
+        return generateSchedules(candidates, ScheduleConstraints.none(), mode, guard);
+    }
+
+    /**
+     * This method generates the schedules whose sections all satisfy the constraints, until the search
+     * finishes or the guard stops it. Sections that break a constraint are masked out before the search.
+     *
+     * @param candidates List of lists of Section objects representing the courses and their sections.
+     * @param constraints Constraints every section of a schedule must satisfy, the other sections are left out of the search.
+     * @param mode Search strategy used to explore the combinations.
+     * @param guard Time budget, result cap and cancellation of this search.
+     * @return The schedules found, and whether the list is complete or why it was truncated.
+     */
+
+    public ScheduleResult generateSchedules(List<List<Section>> candidates, ScheduleConstraints constraints, SearchMode mode, SearchGuard guard) {
+        List<List<Section>> results = new ArrayList<>();
+        forEachSchedule(candidates, constraints, mode, guard, results::add);
+        return new ScheduleResult(results, guard.getTruncationReason());
+    }
+
+    /**
+     * This method generates the schedules in a compact form: every candidate section appears once in a table,
+     * and each schedule is the list of the table indices of its sections. A section shared by many schedules
+     * is therefore serialized only once.
+     *
+     * The table holds every posted section, including the ones masked out by the constraints.
+     *
+     * @param candidates List of lists of Section objects representing the courses and their sections.
+     * @param constraints Constraints every section of a schedule must satisfy, the other sections are left out of the search.
+     * @param mode Search strategy used to explore the combinations.
+     * @param guard Time budget, result cap and cancellation of this search.
+     * @return The sections table and the schedules as indices into it, and whether the list is complete.
+     */
+
+    public CompactScheduleResult generateCompactSchedules(List<List<Section>> candidates, ScheduleConstraints constraints, SearchMode mode, SearchGuard guard) {
+        CompiledCandidates compiled = compile(candidates, constraints, mode);
+        List<int[]> schedules = new ArrayList<>();
+        search(compiled, mode, guard, chosen -> schedules.add(chosen.clone())); // Flat indices are the positions in the sections table.
+        return new CompactScheduleResult(compiled.sectionTable(), schedules, guard.getTruncationReason());
+    }
+
+    /**
+     * This method generates the schedules with the sections of a course that meet at the same times
+     * (they only differ in NRC, professor or seats) kept together: each schedule has, for every course,
+     * the list of its interchangeable sections. The result cap counts grouped schedules. The REFERENCE mode
+     * does not group, every section is a list of its own.
+     *
+     * @param candidates List of lists of Section objects representing the courses and their sections.
+     * @param constraints Constraints every section of a schedule must satisfy, the other sections are left out of the search.
+     * @param mode Search strategy used to explore the combinations.
+     * @param guard Time budget, result cap and cancellation of this search.
+     * @return The grouped schedules found, and whether the list is complete or why it was truncated.
+     */
+
+    public GroupedScheduleResult generateGroupedSchedules(List<List<Section>> candidates, ScheduleConstraints constraints, SearchMode mode, SearchGuard guard) {
+        CompiledCandidates compiled = compile(candidates, constraints, mode);
+        List<List<List<Section>>> schedules = new ArrayList<>();
+        searchGroups(compiled, mode, guard, groups -> {
+            if (!guard.onResult()) {
+                return false;
+            }
+
+            List<List<Section>> schedule = new ArrayList<>(groups.length);
+            for (int group : groups) {
+                schedule.add(compiled.groupSections(group));
+            }
+            schedules.add(schedule);
+            return true;
+        });
+        return new GroupedScheduleResult(schedules, guard.getTruncationReason());
+    }
+
+    /**
+     * This method hands every valid schedule to the consumer as soon as the search finds it,
+     * without keeping the schedules in memory. The search stops if the consumer throws.
+     * The RANKED mode is rejected, it needs a result cap.
+     *
+     * @param candidates List of lists of Section objects representing the courses and their sections.
+     * @param mode Search strategy used to explore the combinations.
+     * @param consumer Receives each valid schedule, the list is not reused by the search.
+     */
+
+    public void forEachSchedule(List<List<Section>> candidates, SearchMode mode, Consumer<List<Section>> consumer) {
+        forEachSchedule(candidates, mode, SearchGuard.unlimited(), consumer);
+    }
+
+    /**
+     * This method hands every valid schedule to the consumer as soon as the search finds it,
+     * until the search finishes or the guard stops it. The guard tells afterwards why it stopped.
+     *
+     * @param candidates List of lists of Section objects representing the courses and their sections.
+     * @param mode Search strategy used to explore the combinations.
+     * @param guard Time budget, result cap and cancellation of this search.
+     * @param consumer Receives each valid schedule, the list is not reused by the search.
+     */
+
+    public void forEachSchedule(List<List<Section>> candidates, SearchMode mode, SearchGuard guard, Consumer<List<Section>> consumer) {
+        forEachSchedule(candidates, ScheduleConstraints.none(), mode, guard, consumer);
+    }
+
+    /**
+     * This method hands every valid schedule whose sections all satisfy the constraints to the consumer
+     * as soon as the search finds it, until the search finishes or the guard stops it.
+     *
+     * @param candidates List of lists of Section objects representing the courses and their sections.
+     * @param constraints Constraints every section of a schedule must satisfy, the other sections are left out of the search.
+     * @param mode Search strategy used to explore the combinations.
+     * @param guard Time budget, result cap and cancellation of this search.
+     * @param consumer Receives each valid schedule, the list is not reused by the search.
+     */
+
+    public void forEachSchedule(List<List<Section>> candidates, ScheduleConstraints constraints, SearchMode mode, SearchGuard guard, Consumer<List<Section>> consumer) {
+        CompiledCandidates compiled = compile(candidates, constraints, mode); // Dense indices and pairwise compatibility, built once per request.
+        search(compiled, mode, guard, chosen -> {
+            consumer.accept(compiled.schedule(chosen));
+            return true;
+        });
+    }
+
+    /**
+     * This method counts all possible schedules without building them, so it stays fast
+     * even when there are millions of valid combinations.
+     *
+     * @param candidates List of lists of Section objects representing the courses and their sections.
+     * @return The number of valid schedules.
+     */
+
+    public long countSchedules(List<List<Section>> candidates) {
+        return countSchedules(candidates, ScheduleConstraints.none());
+    }
+
+    /**
+     * This method counts the schedules whose sections all satisfy the constraints, without building them.
+     *
+     * @param candidates List of lists of Section objects representing the courses and their sections.
+     * @param constraints Constraints every section of a schedule must satisfy, the other sections are left out of the search.
+     * @return The number of valid schedules.
+     */
+
+    public long countSchedules(List<List<Section>> candidates, ScheduleConstraints constraints) {
+        return countSchedules(candidates, constraints, SearchGuard.unlimited());
+    }
+
+    /**
+     * This method counts the schedules whose sections all satisfy the constraints, until the count
+     * finishes or the guard stops it. The guard tells afterwards why it stopped.
+     *
+     * @param candidates List of lists of Section objects representing the courses and their sections.
+     * @param constraints Constraints every section of a schedule must satisfy, the other sections are left out of the search.
+     * @param guard Time budget and cancellation of this count.
+     * @return The number of valid schedules, or the number counted so far if the guard stopped the count.
+     */
+
+    public long countSchedules(List<List<Section>> candidates, ScheduleConstraints constraints, SearchGuard guard) {
+        return ScheduleCounter.count(CompiledCandidates.compile(candidates, true, SectionFilter.of(constraints)), guard);
+    }
+
+    /**
+     * This method returns the K best schedules according to the criteria, without enumerating every combination:
+     * branches that cannot beat the current K-th best schedule are pruned using the criteria's upper bounds.
+     *
+     * @param candidates List of lists of Section objects representing the courses and their sections.
+     * @param k Maximum number of schedules to return.
+     * @param criteria Scoring criteria in priority order, later criteria only break ties of earlier ones.
+     * @return The best schedules, best first.
+     */
+
+    public List<List<Section>> generateTopSchedules(List<List<Section>> candidates, int k, List<? extends ScheduleCriterion> criteria) {
+        return generateTopSchedules(candidates, ScheduleConstraints.none(), k, criteria);
+    }
+
+    /**
+     * This method returns the K best schedules whose sections all satisfy the constraints.
+     *
+     * @param candidates List of lists of Section objects representing the courses and their sections.
+     * @param constraints Constraints every section of a schedule must satisfy, the other sections are left out of the search.
+     * @param k Maximum number of schedules to return.
+     * @param criteria Scoring criteria in priority order, later criteria only break ties of earlier ones.
+     * @return The best schedules, best first.
+     */
+
+    public List<List<Section>> generateTopSchedules(List<List<Section>> candidates, ScheduleConstraints constraints, int k, List<? extends ScheduleCriterion> criteria) {
+        return generateTopSchedules(candidates, constraints, k, criteria, SearchGuard.unlimited()).getSchedules();
+    }
+
+    /**
+     * This method returns the K best schedules whose sections all satisfy the constraints, until the search
+     * finishes or the guard stops it. When it is stopped, the best of the schedules found so far are returned.
+     *
+     * @param candidates List of lists of Section objects representing the courses and their sections.
+     * @param constraints Constraints every section of a schedule must satisfy, the other sections are left out of the search.
+     * @param k Maximum number of schedules to return.
+     * @param criteria Scoring criteria in priority order, later criteria only break ties of earlier ones.
+     * @param guard Time budget and cancellation of this search.
+     * @return The best schedules, best first, and whether the search finished or why it was truncated.
+     */
+
+    public ScheduleResult generateTopSchedules(List<List<Section>> candidates, ScheduleConstraints constraints, int k, List<? extends ScheduleCriterion> criteria, SearchGuard guard) {
+        if (k <= 0) {
+            throw new InvalidRequestException("K must be greater than zero");
+        }
+
+        if (criteria == null || criteria.isEmpty()) {
+            throw new InvalidRequestException("At least one ranking criterion is required");
+        }
+
+        CompiledCandidates compiled = CompiledCandidates.compile(candidates, false, SectionFilter.of(constraints)); // Equivalent sections may score differently, so they are not collapsed.
+        return new ScheduleResult(RankedSearch.search(compiled, criteria, k, guard), guard.getTruncationReason());
+    }
+
+    /**
+     * This method returns one page of schedules, in the order of the backtracking search.
+     * The cursor encodes the position of the search (the section index chosen for each course),
+     * so the next page resumes exactly where this one stopped without keeping any state on the server.
+     *
+     * @param candidates List of lists of Section objects representing the courses and their sections.
+     * @param limit Maximum number of schedules in the page.
+     * @param cursor Cursor returned with the previous page, or null for the first page.
+     * @return The page of schedules and the cursor of the next page, which is null after the last page.
+     */
+
+    public SchedulePage generateSchedulePage(List<List<Section>> candidates, int limit, String cursor) {
+        return generateSchedulePage(candidates, ScheduleConstraints.none(), limit, cursor);
+    }
+
+    /**
+     * This method returns one page of the schedules whose sections all satisfy the constraints.
+     * The cursor is only valid with the same candidates and constraints.
+     *
+     * @param candidates List of lists of Section objects representing the courses and their sections.
+     * @param constraints Constraints every section of a schedule must satisfy, the other sections are left out of the search.
+     * @param limit Maximum number of schedules in the page.
+     * @param cursor Cursor returned with the previous page, or null for the first page.
+     * @return The page of schedules and the cursor of the next page, which is null after the last page.
+     */
+
+    public SchedulePage generateSchedulePage(List<List<Section>> candidates, ScheduleConstraints constraints, int limit, String cursor) {
+        return generateSchedulePage(candidates, constraints, limit, cursor, SearchGuard.unlimited());
+    }
+
+    /**
+     * This method returns one page of the schedules whose sections all satisfy the constraints, until the page
+     * is full or the guard stops the search. A page cut short holds the schedules found so far, and its cursor
+     * resumes the search right after the last of them.
+     *
+     * @param candidates List of lists of Section objects representing the courses and their sections.
+     * @param constraints Constraints every section of a schedule must satisfy, the other sections are left out of the search.
+     * @param limit Maximum number of schedules in the page.
+     * @param cursor Cursor returned with the previous page, or null for the first page.
+     * @param guard Time budget and cancellation of this page.
+     * @return The page of schedules, the cursor of the next page, and whether the page was cut short.
+     */
+
+    public SchedulePage generateSchedulePage(List<List<Section>> candidates, ScheduleConstraints constraints, int limit, String cursor, SearchGuard guard) {
+        if (limit <= 0) {
+            throw new InvalidRequestException("Limit must be greater than zero");
+        }
+
+        CompiledCandidates compiled = CompiledCandidates.compile(candidates, true, SectionFilter.of(constraints));
+        int courses = compiled.courseCount();
+        int[] resumeGroups = null;
+        int[] resumeRanks = null;
+        if (cursor != null) {
+            int[] resume = ScheduleCursor.decode(cursor, compiled);
+            resumeGroups = new int[courses];
+            resumeRanks = new int[courses];
+            for (int course = 0; course < courses; course++) {
+                resumeGroups[course] = compiled.groupOf(resume[course]);
+                resumeRanks[course] = compiled.rankOf(resume[course]);
+            }
+        }
+
+        List<List<Section>> schedules = new ArrayList<>();
+        String[] nextCursor = { null };
+        int[][] fromRanks = { resumeRanks }; // Only the first group combination reached may resume in the middle of its expansion.
+        int[] firstGroups = resumeGroups;
+        int[][] last = { null }; // Flat indices of the last schedule of the page.
+        backtrack(compiled, 0, new int[courses], resumeGroups, guard, groups -> {
+            int[] ranks = fromRanks[0] != null && Arrays.equals(groups, firstGroups) ? fromRanks[0] : null;
+            fromRanks[0] = null;
+            return compiled.expand(groups, ranks, chosen -> {
+                if (schedules.size() == limit) {
+                    nextCursor[0] = ScheduleCursor.encode(chosen, compiled); // The next page starts with this schedule.
+                    return false;
+                }
+                schedules.add(compiled.schedule(chosen));
+                last[0] = chosen.clone();
+                return true;
+            });
+        });
+
+        TruncationReason truncationReason = guard.getTruncationReason();
+        if (truncationReason != null) {
+            // Cut short: the next page resumes right after the last schedule, or where this page started if none was found.
+            nextCursor[0] = last[0] != null ? ScheduleCursor.encodeAfter(last[0], compiled)
+                : cursor != null ? cursor : ScheduleCursor.encodeStart(compiled);
+        }
+        return new SchedulePage(schedules, nextCursor[0], truncationReason);
+    }
+
+    /**
+     * This method runs the search selected by the mode over compiled candidates, and expands every
+     * combination of groups found into its schedules as it goes.
+     *
+     * @param compiled Candidate sections compiled with their dense indices and compatibility matrix.
+     * @param mode Search strategy used to explore the combinations.
+     * @param guard Time budget, result cap and cancellation of this search.
+     * @param sink Receives the flat indices of every valid schedule found, and may stop the search.
+     */
+
+    private void search(CompiledCandidates compiled, SearchMode mode, SearchGuard guard, ScheduleSink sink) {
+        searchGroups(compiled, mode, guard, groups -> compiled.expand(groups, null, chosen -> guard.checkpoint() && guard.onResult() && sink.accept(chosen)));
+    }
+
+    /**
+     * This method runs the search selected by the mode over the groups of equivalent sections.
+     * The result cap is left to the sink, since one combination of groups may stand for many schedules.
+     *
+     * @param compiled Candidate sections compiled with their dense indices and compatibility matrix.
+     * @param mode Search strategy used to explore the combinations.
+     * @param guard Time budget and cancellation of this search.
+     * @param sink Receives the dense group indices of every valid combination found, and may stop the search.
+     */
+
+    private void searchGroups(CompiledCandidates compiled, SearchMode mode, SearchGuard guard, ScheduleSink sink) {
+        mode.engine().search(compiled, guard, sink);
     }
 
     /**
@@ -36,14 +415,14 @@ public class ScheduleService {
         // Check if candidates is null or empty
 
         if (candidates == null || candidates.isEmpty()) {
-            throw new IllegalArgumentException("Candidates list cannot be null or empty");
+            throw new InvalidRequestException("Candidates list cannot be null or empty");
         }
 
         for (List<Section> course : candidates) {
 
             // Check if each course is null or empty
             if (course == null || course.isEmpty()) {
-                throw new IllegalArgumentException("Each course must have at least one section");
+                throw new InvalidRequestException("Each course must have at least one section");
             }
 
 
@@ -51,49 +430,49 @@ public class ScheduleService {
 
                 // Check if section is null, meetings are null or empty
                 if (section == null || section.getMeetings() == null || section.getMeetings().isEmpty()) {
-                    throw new IllegalArgumentException("Each section must have at least one meeting");
+                    throw new InvalidRequestException("Each section must have at least one meeting");
                 }
 
                 if (section.getNrc() == null || section.getNrc().isEmpty()) {
-                    throw new IllegalArgumentException("Each section must have a valid NRC");
+                    throw new InvalidRequestException("Each section must have a valid NRC");
                 }
 
                 if (section.getSectionId() == null || section.getSectionId().isEmpty()) {
-                    throw new IllegalArgumentException("Each section must have a valid section ID");
+                    throw new InvalidRequestException("Each section must have a valid section ID");
                 }
 
                 if (section.getTerm() == null || section.getTerm().isEmpty()) {
-                    throw new IllegalArgumentException("Each section must have a valid term");
+                    throw new InvalidRequestException("Each section must have a valid term");
                 }
 
                 if (section.getPtrm() == null || section.getPtrm().isEmpty()) {
-                    throw new IllegalArgumentException("Each section must have a valid ptrm");
+                    throw new InvalidRequestException("Each section must have a valid ptrm");
                 }
 
                 if (section.getCampus() == null || section.getCampus().isEmpty()) {
-                    throw new IllegalArgumentException("Each section must have a valid campus");
+                    throw new InvalidRequestException("Each section must have a valid campus");
                 }
 
                 // Check if meetings are valid
                 for (Meeting meeting : section.getMeetings()){
 
                     if (meeting.getDay() == null) {
-                        throw new IllegalArgumentException("Each meeting must have a valid day");
+                        throw new InvalidRequestException("Each meeting must have a valid day");
                     }
                     
                     if (meeting.getStart() == null || meeting.getEnd() == null) {
-                        throw new IllegalArgumentException("Each meeting must have valid start and end times");
+                        throw new InvalidRequestException("Each meeting must have valid start and end times");
                     }
                     
                     if (meeting.getStart().isAfter(meeting.getEnd())) {
-                        throw new IllegalArgumentException("Meeting start time cannot be after end time");
+                        throw new InvalidRequestException("Meeting start time cannot be after end time");
                     }
 
                 }
 
                 // Check if professors are valid
                 if (section.getProfessors() == null || section.getProfessors().isEmpty()) {
-                    throw new IllegalArgumentException("Each section must have at least one professor");
+                    throw new InvalidRequestException("Each section must have at least one professor");
                 }
                 
             
@@ -102,46 +481,89 @@ public class ScheduleService {
     }
 
     /**
-     * This method performs backtracking to find all valid schedules.
+     * This method performs backtracking over the groups of equivalent sections to find all valid schedules.
      *
-     * @param candidates List of lists of Section objects representing the courses and their sections.
+     * @param compiled Candidate sections compiled with their dense indices and compatibility matrix.
      * @param idx Current index in the candidates list.
-     * @param current Current schedule being built.
-     * @param results List to store all valid schedules found.
+     * @param chosen Dense indices of the groups in the current schedule, one per course already visited.
+     * @param resume Dense indices of the groups to resume from, or null to explore every group of this course.
+     * @param guard Time budget and cancellation of this search.
+     * @param sink Receives the groups of every valid schedule found, and may stop the search.
+     * @return false if the sink or the guard stopped the search, true otherwise.
      */
 
-    public void backtrack(List<List<Section>> candidates, int idx, List<Section> current, List<List<Section>> results){
+    static boolean backtrack(CompiledCandidates compiled, int idx, int[] chosen, int[] resume, SearchGuard guard, ScheduleSink sink){
 
-        if (idx == candidates.size()){
-            results.add(new ArrayList<>(current));
-            return;
+        // allowed[i] holds the groups compatible with the i groups chosen first, it is pushed and popped along with chosen.
+        long[][] allowed = new long[compiled.courseCount() + 1][CompiledCandidates.words(compiled.groupCount())];
+        Bits.set(allowed[0], 0, compiled.groupCount());
+        for (int j = 0; j < idx; j++){
+            Bits.and(allowed[j], compiled.compatibleRow(chosen[j]), allowed[j + 1]);
         }
 
-        for (Section sec : candidates.get(idx)){
+        return backtrack(compiled, idx, chosen, allowed, resume, guard, sink);
+    }
 
-            boolean hasConflict = false;
-            for (Section chosen : current){
-                if (conflict(chosen, sec)){
-                    hasConflict = true;
-                    break;
-                }
-            }
+    /**
+     * This method performs the backtracking keeping the groups still compatible with the current schedule,
+     * so each candidate group costs one bit test whatever the depth, and conflicting groups are skipped
+     * without being looked at.
+     *
+     * @param compiled Candidate sections compiled with their dense indices and compatibility matrix.
+     * @param idx Current index in the candidates list.
+     * @param chosen Dense indices of the groups in the current schedule, one per course already visited.
+     * @param allowed Groups compatible with the current schedule by depth, allowed[idx] is the one of this call.
+     * @param resume Dense indices of the groups to resume from, or null to explore every group of this course.
+     * @param guard Time budget and cancellation of this search.
+     * @param sink Receives the groups of every valid schedule found, and may stop the search.
+     * @return false if the sink or the guard stopped the search, true otherwise.
+     */
 
-            if (hasConflict) continue;
+    private static boolean backtrack(CompiledCandidates compiled, int idx, int[] chosen, long[][] allowed, int[] resume, SearchGuard guard, ScheduleSink sink){
 
-            // Add the section
-            current.add(sec);
+        if (!guard.checkpoint()){
+            return false; // Out of time or cancelled.
+        }
 
-            // Next course
+        if (idx == compiled.courseCount()){
+            return sink.accept(chosen);
+        }
+
+        long[] candidates = allowed[idx];
+        int first = resume != null ? resume[idx] : compiled.firstGroup(idx); // Groups before the resume position were already explored.
+        int end = compiled.endGroup(idx);
+        for (int group = Bits.next(candidates, first, end); group != -1; group = Bits.next(candidates, group + 1, end)){
 
-            backtrack(candidates, idx + 1, current, results);
+            // Add the group, and keep only the groups that are also compatible with it
+            chosen[idx] = group;
+            Bits.and(candidates, compiled.compatibleRow(group), allowed[idx + 1]);
 
-            // Remove the last course
+            // Next course, only the first group explored here continues from the resume position
 
-            current.remove(current.size()-1);
+            if (!backtrack(compiled, idx + 1, chosen, allowed, group == first ? resume : null, guard, sink)) {
+                return false;
+            }
+
+        }
+        return true;
+    }
 
+    /**
+     * This method compiles the candidates for the given search mode. The REFERENCE mode is what the other
+     * modes are checked against, so it gets one group per section and the constraints checked on the Meeting
+     * objects: the packing, grouping and masking of the other modes never decide what it returns.
+     *
+     * @param candidates List of lists of Section objects representing the courses and their sections.
+     * @param constraints Constraints every section of a schedule must satisfy, the other sections are left out of the search.
+     * @param mode Search strategy the candidates are compiled for.
+     * @return The compiled candidates.
+     */
 
+    private static CompiledCandidates compile(List<List<Section>> candidates, ScheduleConstraints constraints, SearchMode mode) {
+        if (mode == SearchMode.REFERENCE) {
+            return CompiledCandidates.compile(candidates, false, SectionFilter.ofMeetings(constraints));
         }
+        return CompiledCandidates.compile(candidates, true, SectionFilter.of(constraints));
     }
 
     /**
@@ -152,7 +574,7 @@ public class ScheduleService {
      * @return true if there is a conflict, false otherwise.
      */
 
-    private boolean conflict(Section a, Section b){
+    static boolean conflict(Section a, Section b){
 
         for (Meeting m1 : a.getMeetings()){
 
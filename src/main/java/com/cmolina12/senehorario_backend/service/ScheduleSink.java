@@ -0,0 +1,19 @@
+package com.cmolina12.senehorario_backend.service;
+
+/**
+ * Receives the schedules found by the solver as dense section indices.
+ */
+
+@FunctionalInterface
+interface ScheduleSink {
+
+    /**
+     * Called for every valid schedule.
+     *
+     * @param chosen dense index of the section chosen for each course, in course order. The array is
+     *               reused by the search, so it must be copied if it is kept.
+     * @return true to keep searching, false to stop the search.
+     */
+
+    boolean accept(int[] chosen);
+}
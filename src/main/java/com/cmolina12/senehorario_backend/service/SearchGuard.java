@@ -0,0 +1,127 @@
+package com.cmolina12.senehorario_backend.service;
+
+import com.cmolina12.senehorario_backend.domain.TruncationReason;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Time budget, result cap and cancellation of one schedule search.
+ *
+ * The search checks the guard cooperatively: at every node it calls
+ * checkpoint(), which reads the clock only every CHECK_INTERVAL calls, and
+ * before handing over a schedule it calls onResult(). Once the guard trips it
+ * remembers why, and every later check fails so the search unwinds quickly.
+ * A guard can be shared by the threads of a parallel search.
+ */
+
+public class SearchGuard {
+
+    static final int CHECK_INTERVAL = 1024; // Nodes between two reads of the clock.
+
+    private static final long NO_LIMIT = Long.MAX_VALUE;
+
+    private final long deadline; // System.nanoTime() value after which the search stops.
+    private final boolean hasDeadline;
+    private final long maxResults;
+    private final AtomicLong results = new AtomicLong();
+    private final AtomicReference<TruncationReason> reason = new AtomicReference<>();
+    private int countdown = CHECK_INTERVAL; // Not synchronized on purpose, a race only changes how often the clock is read.
+
+    /**
+     * Creates a guard for a search.
+     *
+     * @param timeBudget maximum duration of the search, null for no deadline.
+     * @param maxResults maximum number of schedules to hand over, must be positive.
+     */
+
+    public SearchGuard(Duration timeBudget, long maxResults) {
+        if (maxResults <= 0) {
+            throw new InvalidRequestException("Max results must be greater than zero");
+        }
+        this.hasDeadline = timeBudget != null;
+        this.deadline = hasDeadline ? System.nanoTime() + timeBudget.toNanos() : 0L;
+        this.maxResults = maxResults;
+    }
+
+    /**
+     * @return a guard that never stops the search unless it is cancelled.
+     */
+
+    public static SearchGuard unlimited() {
+        return new SearchGuard(null, NO_LIMIT);
+    }
+
+    /**
+     * Stops the search at its next check, for example because the client went away.
+     */
+
+    public void cancel() {
+        stop(TruncationReason.CANCELLED);
+    }
+
+    /**
+     * @return why the search was stopped, or null if it was not.
+     */
+
+    public TruncationReason getTruncationReason() {
+        return reason.get();
+    }
+
+    /**
+     * @return the maximum number of schedules to hand over, Long.MAX_VALUE when there is no cap.
+     */
+
+    long getMaxResults() {
+        return maxResults;
+    }
+
+    /**
+     * @return true if the guard stops the search after a number of schedules.
+     */
+
+    boolean hasResultCap() {
+        return maxResults != NO_LIMIT;
+    }
+
+    /**
+     * Called by the search at every node.
+     *
+     * @return true to keep searching, false if the search must stop.
+     */
+
+    boolean checkpoint() {
+        if (reason.get() != null) {
+            return false;
+        }
+        if (hasDeadline && --countdown <= 0) {
+            countdown = CHECK_INTERVAL;
+            if (System.nanoTime() - deadline > 0) {
+                stop(TruncationReason.DEADLINE);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Called by the search before handing over a schedule.
+     *
+     * @return true if the schedule can be handed over, false if the search must stop without it.
+     */
+
+    boolean onResult() {
+        if (reason.get() != null) {
+            return false;
+        }
+        if (hasResultCap() && results.incrementAndGet() > maxResults) {
+            stop(TruncationReason.RESULT_LIMIT); // Only tripped when one more schedule exists, so exactly maxResults schedules is still complete.
+            return false;
+        }
+        return true;
+    }
+
+    private void stop(TruncationReason why) {
+        reason.compareAndSet(null, why); // The first reason wins.
+    }
+}
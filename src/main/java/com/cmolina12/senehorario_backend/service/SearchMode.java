@@ -0,0 +1,28 @@
+package com.cmolina12.senehorario_backend.service;
+
+/**
+ * Search strategies available to generate schedules, each one backed by its own engine.
+ * Every mode returns the same schedules, only the order in which they are found may differ.
+ */
+
+public enum SearchMode {
+    BACKTRACKING((compiled, guard, sink) -> ScheduleService.backtrack(compiled, 0, new int[compiled.courseCount()], null, guard, sink)), // Courses in the order they were posted, compatible groups kept as a bitset.
+    FORWARD_CHECKING(ForwardCheckingSearch::search), // Most constrained course first, dead ends detected as soon as a course runs out of sections.
+    PARALLEL(ParallelSearch::search), // Backtracking split across cores with fork/join, same order as BACKTRACKING.
+    REFERENCE(ReferenceSearch::search), // Plain backtracking comparing the meetings of every pair, same order as BACKTRACKING. Slow, kept to check the other modes.
+    RANKED(RankedSearch::search); // Best schedules first by free days, then gaps, then early mornings. Needs a result cap, and cannot stream.
+
+    private final ScheduleEngine engine;
+
+    SearchMode(ScheduleEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * @return the engine that runs the search of this mode.
+     */
+
+    ScheduleEngine engine() {
+        return engine;
+    }
+}
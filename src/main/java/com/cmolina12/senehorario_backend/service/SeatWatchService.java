@@ -0,0 +1,250 @@
+package com.cmolina12.senehorario_backend.service;
+
+import com.cmolina12.senehorario_backend.domain.SeatUpdate;
+import com.cmolina12.senehorario_backend.domain.Section;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Pushes the seats of watched sections to the clients over Server-Sent Events, so they do not
+ * have to search the catalog again and again waiting for a full section to open up.
+ *
+ * A single poll loop fetches the watched courses from the API, once per course however many
+ * clients watch it, and each client is sent only the sections whose available seats changed
+ * since the last value it got.
+ */
+
+@Service
+public class SeatWatchService {
+
+    @Autowired
+    private CourseService courseService; // Source of the current sections of each course.
+
+    @Autowired
+    private ExecutorService courseFetchExecutor; // Threads used to fetch the watched courses at the same time.
+
+    @Value("${senehorario.seats.stream-timeout:30m}")
+    private Duration streamTimeout = Duration.ofMinutes(30); // How long a stream stays open, clients reconnect after it.
+
+    @Value("${senehorario.seats.fetch-timeout:40s}")
+    private Duration fetchTimeout = Duration.ofSeconds(40); // How long the seats of the watched courses are waited for, above the API retries.
+
+    public static final int MAX_WATCHED_COURSES = 10; // Upper bound of the courses watched by one stream.
+
+    public static final String SEATS_EVENT = "seats"; // Name of the events sent to the clients.
+
+    private static final Logger log = LoggerFactory.getLogger(SeatWatchService.class);
+
+    private final Set<Watch> watches = ConcurrentHashMap.newKeySet(); // Open streams.
+
+    /**
+     * Opens a stream with the seats of the sections of some courses. The first event has every
+     * watched section with its seats as the API returns them now, and each later event only the
+     * sections that changed. A course the API does not answer for in time starts with the seats the
+     * catalog knows, and is corrected by the next poll.
+     *
+     * @param codes the course codes to watch, e.g. ISIS1204. Repeated codes are only watched once.
+     * @param nrcs the NRCs to watch among the sections of those courses, every section if null or empty.
+     * @return the stream, sending SEATS_EVENT events whose data is a list of SeatUpdate.
+     * @throws InvalidRequestException if there are no codes or too many, a course has no sections, or an NRC is not a section of the courses.
+     */
+
+    public SseEmitter watch(List<String> codes, List<String> nrcs) {
+        SseEmitter emitter = new SseEmitter(streamTimeout.toMillis());
+        register(emitter, codes, nrcs);
+        return emitter;
+    }
+
+    /**
+     * Sends the current seats to a stream and adds it to the ones updated by pollSeats.
+     *
+     * @param emitter the stream.
+     * @param codes the course codes to watch.
+     * @param nrcs the NRCs to watch, every section if null or empty.
+     */
+
+    void register(SseEmitter emitter, List<String> codes, List<String> nrcs) {
+        Set<String> distinct = new LinkedHashSet<>(); // Same codes as CourseService.findSectionsByCourseCodes looks up.
+        if (codes != null) {
+            for (String code : codes) {
+                if (code != null && !code.isBlank()) {
+                    distinct.add(code.trim().toUpperCase(Locale.ROOT));
+                }
+            }
+        }
+        if (distinct.size() > MAX_WATCHED_COURSES) {
+            throw new InvalidRequestException("At most " + MAX_WATCHED_COURSES + " courses can be watched at once");
+        }
+
+        Set<String> wanted = new LinkedHashSet<>();
+        if (nrcs != null) {
+            for (String nrc : nrcs) {
+                if (nrc != null && !nrc.isBlank()) {
+                    wanted.add(nrc.trim());
+                }
+            }
+        }
+
+        // Checks the courses and NRCs exist. Answered from the snapshot or the cache, so the seats may be minutes old.
+        List<List<Section>> sections = courseService.findSectionsByCourseCodes(new ArrayList<>(distinct));
+        Set<String> known = new HashSet<>();
+        for (List<Section> course : sections) {
+            for (Section section : course) {
+                known.add(section.getNrc());
+            }
+        }
+        for (String nrc : wanted) {
+            if (!known.contains(nrc)) {
+                throw new InvalidRequestException("NRC " + nrc + " is not a section of the watched courses");
+            }
+        }
+
+        Map<String, List<Section>> latest = fetchLatest(distinct);
+        Watch watch = new Watch(emitter, distinct, wanted);
+        List<SeatUpdate> current = new ArrayList<>();
+        int i = 0;
+        for (String code : distinct) {
+            List<Section> checked = sections.get(i++);
+            for (Section section : latest.getOrDefault(code, checked)) { // The sections checked above if the API did not answer.
+                if (watch.watches(section.getNrc())) {
+                    current.add(new SeatUpdate(code, section.getNrc(), null, section.getAvailableSeats(), section.getTotalSeats()));
+                    watch.seen.put(section.getNrc(), section.getAvailableSeats()); // Changes are computed against these seats.
+                }
+            }
+        }
+
+        emitter.onCompletion(() -> watches.remove(watch));
+        emitter.onTimeout(() -> watches.remove(watch));
+        emitter.onError(e -> watches.remove(watch));
+        if (watch.send(current)) {
+            watches.add(watch);
+        }
+    }
+
+    /**
+     * Fetches the watched courses from the API and sends each stream the sections whose seats changed.
+     * A course that cannot be fetched in time is skipped until the next poll.
+     */
+
+    @Scheduled(fixedDelayString = "${senehorario.seats.poll-interval:30s}")
+    public void pollSeats() {
+        if (watches.isEmpty()) {
+            return; // Nobody is watching, the API is not asked.
+        }
+
+        Set<String> codes = new LinkedHashSet<>();
+        for (Watch watch : watches) {
+            codes.addAll(watch.codes);
+        }
+
+        Map<String, List<Section>> latest = fetchLatest(codes); // Sections of each course fetched in this poll.
+        for (Watch watch : watches) {
+            List<SeatUpdate> changes = watch.changes(latest);
+            if (!changes.isEmpty() && !watch.send(changes)) {
+                watches.remove(watch);
+            }
+        }
+    }
+
+    /**
+     * Fetches the sections of some courses from the API, each course once and all of them at the same time,
+     * waiting at most fetchTimeout. A fetch still running then finishes on its own and its sections are dropped.
+     *
+     * @param codes the course codes, normalized.
+     * @return the sections of each course fetched in time, courses that failed or timed out are left out.
+     */
+
+    private Map<String, List<Section>> fetchLatest(Set<String> codes) {
+        Map<String, CompletableFuture<List<Section>>> fetches = new LinkedHashMap<>();
+        for (String code : codes) {
+            fetches.put(code, CompletableFuture.supplyAsync(() -> courseService.fetchLatestSections(code), courseFetchExecutor)
+                .orTimeout(fetchTimeout.toMillis(), TimeUnit.MILLISECONDS));
+        }
+
+        Map<String, List<Section>> latest = new HashMap<>();
+        for (Map.Entry<String, CompletableFuture<List<Section>>> fetch : fetches.entrySet()) {
+            try {
+                latest.put(fetch.getKey(), fetch.getValue().join());
+            } catch (CompletionException e) {
+                log.warn("Could not fetch the seats of {}, trying again in the next poll", fetch.getKey(), e.getCause());
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * @return the number of open streams.
+     */
+
+    public int watchCount() {
+        return watches.size();
+    }
+
+    // A stream and the seats it was last sent.
+    private static final class Watch {
+
+        private final SseEmitter emitter;
+        private final Set<String> codes; // Watched courses.
+        private final Set<String> nrcs; // Watched sections, every section of the courses if empty.
+        private final Map<String, Integer> seen = new ConcurrentHashMap<>(); // Available seats last sent, by NRC.
+
+        Watch(SseEmitter emitter, Set<String> codes, Set<String> nrcs) {
+            this.emitter = emitter;
+            this.codes = codes;
+            this.nrcs = nrcs;
+        }
+
+        boolean watches(String nrc) {
+            return nrcs.isEmpty() || nrcs.contains(nrc);
+        }
+
+        // The watched sections whose seats differ from the ones last sent, remembered as sent.
+        List<SeatUpdate> changes(Map<String, List<Section>> latest) {
+            List<SeatUpdate> changes = new ArrayList<>();
+            for (String code : codes) {
+                for (Section section : latest.getOrDefault(code, List.of())) {
+                    if (!watches(section.getNrc())) {
+                        continue;
+                    }
+                    Integer previous = seen.put(section.getNrc(), section.getAvailableSeats());
+                    if (previous == null || previous != section.getAvailableSeats()) {
+                        changes.add(new SeatUpdate(code, section.getNrc(), previous, section.getAvailableSeats(), section.getTotalSeats()));
+                    }
+                }
+            }
+            return changes;
+        }
+
+        // False if the client is gone.
+        boolean send(List<SeatUpdate> updates) {
+            try {
+                emitter.send(SseEmitter.event().name(SEATS_EVENT).data(updates));
+                return true;
+            } catch (IOException | IllegalStateException e) {
+                emitter.completeWithError(e);
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.cmolina12.senehorario_backend.service;
+
+import com.cmolina12.senehorario_backend.domain.Meeting;
+import com.cmolina12.senehorario_backend.domain.ScheduleConstraints;
+import com.cmolina12.senehorario_backend.domain.Section;
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Section-level mask built from the constraints of a request.
+ *
+ * Every time constraint (earliest start, latest end, free days and blocked
+ * windows) becomes a blocked interval of the week in the packed form of
+ * PackedMeetings, so a section passes the time constraints when its packed
+ * meetings do not overlap the blocked intervals. Campus and seats are checked
+ * on the section itself. Sections that do not pass are left out of the search.
+ *
+ * The filter built by ofMeetings checks the time constraints on the Meeting
+ * objects instead, for the REFERENCE mode, so the packed form never decides
+ * what the reference returns.
+ */
+
+final class SectionFilter {
+
+    private static final SectionFilter NONE = new SectionFilter(new int[0], Set.of(), false, null, List.of());
+
+    private final int[] blocked; // Blocked intervals of the week, packed and sorted by start.
+    private final Set<String> campuses; // Allowed campuses in upper case, any campus when empty.
+    private final boolean withSeats; // Only sections with available seats.
+    private final ScheduleConstraints byMeetings; // Set when the time constraints are checked on the Meeting objects, see ofMeetings.
+    private final List<Meeting> windows; // Blocked windows of byMeetings, one meeting each.
+
+    private SectionFilter(int[] blocked, Set<String> campuses, boolean withSeats, ScheduleConstraints byMeetings, List<Meeting> windows) {
+        this.blocked = blocked;
+        this.campuses = campuses;
+        this.withSeats = withSeats;
+        this.byMeetings = byMeetings;
+        this.windows = windows;
+    }
+
+    /**
+     * @return a filter that allows every section.
+     */
+
+    static SectionFilter none() {
+        return NONE;
+    }
+
+    /**
+     * Builds the filter of a request.
+     *
+     * @param constraints the constraints of the request, or null for none.
+     * @return the filter.
+     * @throws InvalidRequestException if a blocked window is malformed.
+     */
+
+    static SectionFilter of(ScheduleConstraints constraints) {
+        if (constraints == null) {
+            return NONE;
+        }
+
+        List<Long> intervals = new ArrayList<>();
+        for (int day = 0; day < 7; day++) {
+            int dayStart = day * PackedMeetings.SECONDS_PER_DAY;
+            if (constraints.getNotBefore() != null) {
+                intervals.add(PackedMeetings.interval(dayStart, dayStart + constraints.getNotBefore().toSecondOfDay()));
+            }
+            if (constraints.getNotAfter() != null) {
+                intervals.add(PackedMeetings.interval(dayStart + constraints.getNotAfter().toSecondOfDay(), dayStart + PackedMeetings.SECONDS_PER_DAY));
+            }
+        }
+
+        for (DayOfWeek day : constraints.getFreeDays()) {
+            int dayStart = (day.getValue() - 1) * PackedMeetings.SECONDS_PER_DAY;
+            intervals.add(PackedMeetings.interval(dayStart, dayStart + PackedMeetings.SECONDS_PER_DAY));
+        }
+
+        for (String window : constraints.getBlocked()) {
+            Meeting parsed = parseWindow(window);
+            int dayStart = (parsed.getDay().getValue() - 1) * PackedMeetings.SECONDS_PER_DAY;
+            intervals.add(PackedMeetings.interval(dayStart + parsed.getStart().toSecondOfDay(), dayStart + parsed.getEnd().toSecondOfDay()));
+        }
+
+        long[] packed = new long[intervals.size()];
+        for (int i = 0; i < packed.length; i++) {
+            packed[i] = intervals.get(i);
+        }
+
+        return new SectionFilter(PackedMeetings.sorted(packed), campuses(constraints), constraints.isWithSeats(), null, List.of());
+    }
+
+    /**
+     * Builds the filter of a request that checks every Meeting of a section directly against the
+     * constraints, without packing anything. Slower, used by the REFERENCE mode.
+     *
+     * @param constraints the constraints of the request, or null for none.
+     * @return the filter.
+     * @throws InvalidRequestException if a blocked window is malformed.
+     */
+
+    static SectionFilter ofMeetings(ScheduleConstraints constraints) {
+        if (constraints == null) {
+            return NONE;
+        }
+
+        List<Meeting> windows = new ArrayList<>();
+        for (String window : constraints.getBlocked()) {
+            windows.add(parseWindow(window));
+        }
+        return new SectionFilter(new int[0], campuses(constraints), constraints.isWithSeats(), constraints, windows);
+    }
+
+    private static Set<String> campuses(ScheduleConstraints constraints) {
+        Set<String> campuses = new HashSet<>();
+        for (String campus : constraints.getCampuses()) {
+            campuses.add(campus.trim().toUpperCase(Locale.ROOT));
+        }
+        return campuses;
+    }
+
+    // Parses a blocked window such as "MONDAY 12:00-14:00" into a meeting on that day and times.
+    private static Meeting parseWindow(String window) {
+        String[] parts = window.trim().split("\\s+");
+        String[] times = parts.length == 2 ? parts[1].split("-") : new String[0];
+        if (times.length != 2) {
+            throw new InvalidRequestException("Invalid blocked window, expected e.g. MONDAY 12:00-14:00: " + window);
+        }
+
+        DayOfWeek day;
+        LocalTime start;
+        LocalTime end;
+        try {
+            day = DayOfWeek.valueOf(parts[0].toUpperCase(Locale.ROOT)); // Throws IllegalArgumentException for an unknown day.
+            start = LocalTime.parse(times[0]);
+            end = LocalTime.parse(times[1]);
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            throw new InvalidRequestException("Invalid blocked window, expected e.g. MONDAY 12:00-14:00: " + window);
+        }
+
+        if (!start.isBefore(end)) {
+            throw new InvalidRequestException("Blocked window must start before it ends: " + window);
+        }
+        return new Meeting(day, start, end, null);
+    }
+
+    /**
+     * Checks whether a section satisfies the constraints.
+     *
+     * @param section the section to check.
+     * @param meetings the packed meetings of the section.
+     * @return true if the section can be part of a schedule, false otherwise.
+     */
+
+    boolean allows(Section section, int[] meetings) {
+        if (withSeats && section.getAvailableSeats() <= 0) {
+            return false;
+        }
+
+        if (!campuses.isEmpty() && (section.getCampus() == null || !campuses.contains(section.getCampus().trim().toUpperCase(Locale.ROOT)))) {
+            return false;
+        }
+
+        if (byMeetings != null) {
+            return meetingsAllowed(section);
+        }
+        return !PackedMeetings.overlap(meetings, 0, meetings.length, blocked, 0, blocked.length);
+    }
+
+    // The time constraints of ofMeetings, with the same rule as ScheduleService.conflict for the blocked windows.
+    private boolean meetingsAllowed(Section section) {
+        for (Meeting meeting : section.getMeetings()) {
+            if (byMeetings.getFreeDays().contains(meeting.getDay())) {
+                return false;
+            }
+            if (byMeetings.getNotBefore() != null && meeting.getStart().isBefore(byMeetings.getNotBefore())) {
+                return false;
+            }
+            if (byMeetings.getNotAfter() != null && meeting.getEnd().isAfter(byMeetings.getNotAfter())) {
+                return false;
+            }
+            for (Meeting window : windows) {
+                if (meeting.getDay() == window.getDay() && meeting.getStart().isBefore(window.getEnd()) && meeting.getEnd().isAfter(window.getStart())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
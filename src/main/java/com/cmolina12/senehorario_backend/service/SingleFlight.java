@@ -0,0 +1,72 @@
+package com.cmolina12.senehorario_backend.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls for the same key: the first caller runs the call, and every
+ * caller arriving while it is in flight waits for it and gets the same result, or the same
+ * exception. Once the call finishes the key is free again, so nothing is remembered; caching
+ * the result is up to the caller.
+ *
+ * @param <K> the key identifying equivalent calls, e.g. a normalized query.
+ * @param <V> the result of the call.
+ */
+
+final class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>(); // Calls running right now, by key.
+
+    /**
+     * Runs the call, or joins the one already running for the same key.
+     *
+     * @param key the key of the call.
+     * @param call the call, only run by the first caller.
+     * @return the result of the call.
+     * @throws RuntimeException the exception thrown by the call, to every caller that waited for it.
+     */
+
+    V run(K key, Supplier<V> call) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            return await(running); // Someone else is already calling, wait for their result.
+        }
+
+        try {
+            V result = call.get();
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e); // The waiting callers fail the same way.
+            throw e;
+        } finally {
+            inFlight.remove(key, mine); // The next call for this key goes out again.
+        }
+    }
+
+    /**
+     * @return the number of calls running right now.
+     */
+
+    int inFlight() {
+        return inFlight.size();
+    }
+
+    private static <V> V await(CompletableFuture<V> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause; // Same exception as the caller that ran the call.
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
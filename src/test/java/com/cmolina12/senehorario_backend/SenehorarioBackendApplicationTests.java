@@ -3,7 +3,7 @@ package com.cmolina12.senehorario_backend;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = "senehorario.catalog.snapshot.enabled=false") // No background download of the catalog during tests.
 class SenehorarioBackendApplicationTests {
 
 	@Test
@@ -0,0 +1,182 @@
+package com.cmolina12.senehorario_backend.config;
+
+import com.cmolina12.senehorario_backend.models.ApiCourse;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+// The RestTemplate of the catalog API against a local server standing in for the API.
+
+class RestConfigTest {
+
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger(); // Requests that reached the server.
+    private final List<AutoCloseable> clients = new ArrayList<>();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() throws Exception {
+        for (AutoCloseable client : clients) {
+            client.close();
+        }
+        server.stop(0);
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    private RestTemplate catalogApi(MeterRegistry meterRegistry, Duration readTimeout, int maxAttempts, int failureThreshold) {
+        RestConfig restConfig = new RestConfig();
+        PoolingHttpClientConnectionManager pool = restConfig.catalogApiConnectionManager(10, 5, Duration.ofSeconds(1), readTimeout, Duration.ofMinutes(5), meterRegistry);
+        CloseableHttpClient httpClient = restConfig.catalogApiHttpClient(pool, Duration.ofSeconds(1), readTimeout, Duration.ofSeconds(30));
+        clients.add(httpClient);
+        CircuitBreakerInterceptor circuitBreaker = restConfig.catalogApiCircuitBreaker(failureThreshold, Duration.ofMinutes(1), meterRegistry);
+        return restConfig.restTemplate(new RestTemplateBuilder(), httpClient, circuitBreaker, maxAttempts, Duration.ofMillis(1), Duration.ofMillis(5), meterRegistry);
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body, boolean gzip) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        if (gzip) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+                out.write(body);
+            }
+            body = compressed.toByteArray();
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Test
+    void failingApi_shouldBeRetriedAndAnswerCompressed() {
+        List<String> acceptEncodings = new ArrayList<>();
+        server.createContext("/api/courses", exchange -> {
+            acceptEncodings.add(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+            if (requests.incrementAndGet() <= 2) {
+                respond(exchange, 503, new byte[0], false); // Fails twice, then recovers.
+            } else {
+                respond(exchange, 200, "[{\"nrc\":\"20001\"}]".getBytes(StandardCharsets.UTF_8), true);
+            }
+        });
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RestTemplate restTemplate = catalogApi(meterRegistry, Duration.ofSeconds(5), 3, 5);
+
+        ApiCourse[] sections = restTemplate.getForObject(url("/api/courses?nameInput={nameInput}"), ApiCourse[].class, "ISIS1204");
+
+        assert sections != null && sections.length == 1 && "20001".equals(sections[0].getNrc()) : "The third attempt should be decompressed and read.";
+        assert requests.get() == 3 : "Expected 3 attempts, but got " + requests.get();
+        assert meterRegistry.get("uniandes.api.retries").counter().count() == 2 : "Both retries should be counted.";
+        assert acceptEncodings.get(0) != null && acceptEncodings.get(0).contains("gzip") : "Compressed responses should be requested, but got " + acceptEncodings.get(0);
+        assert meterRegistry.find("httpcomponents.httpclient.pool.total.max").tag("httpclient", RestConfig.CATALOG_API_CLIENT).gauge() != null : "The pool should publish its metrics.";
+    }
+
+    @Test
+    void repeatedFailures_shouldOpenTheCircuit() {
+        server.createContext("/api/courses", exchange -> {
+            requests.incrementAndGet();
+            respond(exchange, 500, new byte[0], false);
+        });
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RestTemplate restTemplate = catalogApi(meterRegistry, Duration.ofSeconds(5), 1, 2);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                restTemplate.getForObject(url("/api/courses"), ApiCourse[].class);
+                assert false : "The API failure should be reported.";
+            } catch (HttpServerErrorException e) {
+                // Expected, the API answered 500.
+            }
+        }
+        try {
+            restTemplate.getForObject(url("/api/courses"), ApiCourse[].class);
+            assert false : "The open circuit should reject the request.";
+        } catch (ResourceAccessException e) {
+            // Expected, the request was not sent.
+        }
+
+        assert requests.get() == 2 : "The rejected request should not reach the API, but it got " + requests.get() + " requests.";
+        assert meterRegistry.get("uniandes.api.circuit.state").gauge().value() == CircuitBreakerInterceptor.State.OPEN.ordinal() : "The circuit should be reported open.";
+    }
+
+    @Test
+    void silentApi_shouldTimeOut() {
+        server.createContext("/api/courses", exchange -> {
+            requests.incrementAndGet();
+            try {
+                Thread.sleep(1000); // Never answers in time.
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, 200, "[]".getBytes(StandardCharsets.UTF_8), false);
+        });
+        RestTemplate restTemplate = catalogApi(new SimpleMeterRegistry(), Duration.ofMillis(200), 1, 5);
+
+        long start = System.nanoTime();
+        try {
+            restTemplate.getForObject(url("/api/courses"), ApiCourse[].class);
+            assert false : "The request should time out.";
+        } catch (ResourceAccessException e) {
+            long elapsed = Duration.ofNanos(System.nanoTime() - start).toMillis();
+            assert elapsed < 900 : "The request should give up after the read timeout, but took " + elapsed + " ms.";
+        }
+    }
+
+    @Test
+    void fullRefreshQueue_shouldRejectMoreRefreshes() throws Exception {
+        ExecutorService refreshes = new RestConfig().catalogRefreshExecutor(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            refreshes.execute(() -> {
+                try {
+                    release.await(5, TimeUnit.SECONDS); // Keeps the only thread busy.
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            refreshes.execute(() -> { }); // Waits in the queue.
+            try {
+                refreshes.execute(() -> { });
+                assert false : "A refresh beyond the queue should be rejected.";
+            } catch (RejectedExecutionException e) {
+                // Expected, the caller keeps serving the stale response.
+            }
+        } finally {
+            release.countDown();
+            refreshes.shutdown();
+            assert refreshes.awaitTermination(5, TimeUnit.SECONDS) : "The refreshes should finish.";
+        }
+    }
+}
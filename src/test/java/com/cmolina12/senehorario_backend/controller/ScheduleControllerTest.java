@@ -0,0 +1,263 @@
+package com.cmolina12.senehorario_backend.controller;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.cmolina12.senehorario_backend.domain.Section;
+import com.cmolina12.senehorario_backend.service.CourseService;
+import com.cmolina12.senehorario_backend.service.InvalidRequestException;
+import com.cmolina12.senehorario_backend.service.ScheduleService;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.ServletException;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+@WebMvcTest(ScheduleController.class)
+@Import(ScheduleService.class)
+class ScheduleControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @MockitoBean
+    private CourseService courseService; // Stands in for the catalog API in the by-codes requests.
+
+    // One course with two sections on different days and another course with a single section on Tuesday.
+    static final String CANDIDATES = """
+        [
+          [
+            {"nrc":"11060","sectionId":"1","term":"202519","ptrm":"1","campus":"CAMPUS PRINCIPAL",
+             "meetings":[{"day":"MONDAY","start":"09:00","end":"10:00","location":"ML 101"}],
+             "professors":["PROF. A"],"availableSeats":5,"totalSeats":30},
+            {"nrc":"11061","sectionId":"2","term":"202519","ptrm":"1","campus":"CAMPUS PRINCIPAL",
+             "meetings":[{"day":"WEDNESDAY","start":"09:00","end":"10:00","location":"ML 102"}],
+             "professors":["PROF. B"],"availableSeats":0,"totalSeats":30}
+          ],
+          [
+            {"nrc":"22010","sectionId":"1","term":"202519","ptrm":"1","campus":"CAMPUS PRINCIPAL",
+             "meetings":[{"day":"TUESDAY","start":"09:00","end":"10:00","location":"W 101"}],
+             "professors":["PROF. C"],"availableSeats":10,"totalSeats":30}
+          ]
+        ]
+        """;
+
+    @Test
+    void postWithoutNdjson_shouldReturnTheFullJsonList() throws Exception {
+        mockMvc
+            .perform(post("/api/schedules").contentType(MediaType.APPLICATION_JSON).content(CANDIDATES))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+            .andExpect(header().string("X-Schedules-Complete", "true"))
+            .andExpect(header().doesNotExist("X-Schedules-Truncation-Reason"))
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$[0][0].nrc").value("11060"))
+            .andExpect(jsonPath("$[1][0].nrc").value("11061"));
+    }
+
+    @Test
+    void postWithMaxResults_shouldMarkTheListAsTruncated() throws Exception {
+        mockMvc
+            .perform(post("/api/schedules").param("maxResults", "1").contentType(MediaType.APPLICATION_JSON).content(CANDIDATES))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Schedules-Complete", "false"))
+            .andExpect(header().string("X-Schedules-Truncation-Reason", "RESULT_LIMIT"))
+            .andExpect(jsonPath("$.length()").value(1));
+    }
+
+    @Test
+    void postAcceptingNdjson_shouldStreamOneSchedulePerLine() throws Exception {
+        MvcResult started = mockMvc
+            .perform(
+                post("/api/schedules")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .accept(MediaType.APPLICATION_NDJSON)
+                    .content(CANDIDATES)
+            )
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        MvcResult result = mockMvc
+            .perform(asyncDispatch(started))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+            .andReturn();
+
+        String[] lines = result.getResponse().getContentAsString().split("\n");
+        assert lines.length == 3 : "Expected 2 streamed schedules and a status line, but got " + lines.length + " lines";
+        assert lines[0].startsWith("[{\"nrc\":\"11060\"") : "First line should be the schedule with section 11060.";
+        assert lines[1].startsWith("[{\"nrc\":\"11061\"") : "Second line should be the schedule with section 11061.";
+        assert lines[2].equals("{\"complete\":true,\"truncationReason\":null}") : "Last line should be the status, but got " + lines[2];
+    }
+
+    @Test
+    void postAcceptingNdjsonInRankedMode_shouldReturnBadRequest() throws Exception {
+        mockMvc
+            .perform(
+                post("/api/schedules")
+                    .param("mode", "RANKED")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .accept(MediaType.APPLICATION_NDJSON)
+                    .content(CANDIDATES)
+            )
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void postWithLimit_shouldReturnAPageAndItsCursor() throws Exception {
+        mockMvc
+            .perform(post("/api/schedules").param("limit", "1").contentType(MediaType.APPLICATION_JSON).content(CANDIDATES))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.schedules.length()").value(1))
+            .andExpect(jsonPath("$.schedules[0][0].nrc").value("11060"))
+            .andExpect(jsonPath("$.nextCursor").isString());
+    }
+
+    @Test
+    void postWithMalformedCursor_shouldReturnBadRequest() throws Exception {
+        mockMvc
+            .perform(
+                post("/api/schedules")
+                    .param("limit", "1")
+                    .param("cursor", "not a cursor")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(CANDIDATES)
+            )
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void postCount_shouldReturnTheNumberOfSchedules() throws Exception {
+        mockMvc
+            .perform(post("/api/schedules/count").contentType(MediaType.APPLICATION_JSON).content(CANDIDATES))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Schedules-Complete", "true"))
+            .andExpect(content().string("2"));
+    }
+
+    @Test
+    void postWithCompactFormat_shouldReturnASectionsTableAndIndices() throws Exception {
+        mockMvc
+            .perform(post("/api/schedules").param("format", "compact").contentType(MediaType.APPLICATION_JSON).content(CANDIDATES))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.sections.length()").value(3))
+            .andExpect(jsonPath("$.sections[2].nrc").value("22010"))
+            .andExpect(jsonPath("$.schedules.length()").value(2))
+            .andExpect(jsonPath("$.schedules[0][0]").value(0))
+            .andExpect(jsonPath("$.schedules[0][1]").value(2))
+            .andExpect(jsonPath("$.schedules[1][0]").value(1))
+            .andExpect(jsonPath("$.schedules[1][1]").value(2))
+            .andExpect(jsonPath("$.complete").value(true));
+    }
+
+    @Test
+    void postWithGroupedFormat_shouldReturnTheSectionsOfEachCourseAsAList() throws Exception {
+        mockMvc
+            .perform(post("/api/schedules").param("format", "grouped").contentType(MediaType.APPLICATION_JSON).content(CANDIDATES))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.schedules.length()").value(2))
+            .andExpect(jsonPath("$.schedules[0][0][0].nrc").value("11060"))
+            .andExpect(jsonPath("$.schedules[0][1][0].nrc").value("22010"))
+            .andExpect(jsonPath("$.schedules[1][0][0].nrc").value("11061"))
+            .andExpect(jsonPath("$.complete").value(true));
+    }
+
+    @Test
+    void postWithConstraints_shouldLeaveOutTheSectionsThatBreakThem() throws Exception {
+        mockMvc
+            .perform(post("/api/schedules").param("withSeats", "true").contentType(MediaType.APPLICATION_JSON).content(CANDIDATES))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$[0][0].nrc").value("11060"));
+
+        mockMvc
+            .perform(
+                post("/api/schedules/count")
+                    .param("freeDays", "MONDAY")
+                    .param("notBefore", "08:00")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(CANDIDATES)
+            )
+            .andExpect(status().isOk())
+            .andExpect(content().string("1"));
+
+        mockMvc
+            .perform(post("/api/schedules").param("blocked", "MONDAY 12:00-14:00, WEDNESDAY 08:00-09:30").contentType(MediaType.APPLICATION_JSON).content(CANDIDATES))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$[0][0].nrc").value("11060"));
+    }
+
+    @Test
+    void postWithMalformedBlockedWindow_shouldReturnBadRequest() throws Exception {
+        mockMvc
+            .perform(post("/api/schedules").param("blocked", "MONDAY").contentType(MediaType.APPLICATION_JSON).content(CANDIDATES))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void postWithUnknownDayInBlockedWindow_shouldReturnBadRequest() throws Exception {
+        mockMvc
+            .perform(post("/api/schedules").param("blocked", "LUNES 12:00-14:00").contentType(MediaType.APPLICATION_JSON).content(CANDIDATES))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getByCodes_shouldFetchTheCoursesAndReturnTheirSchedules() throws Exception {
+        List<List<Section>> candidates = objectMapper.readValue(CANDIDATES, new TypeReference<List<List<Section>>>() {});
+        when(courseService.findSectionsByCourseCodes(List.of("ISIS1204", "MATE1203"))).thenReturn(candidates);
+
+        mockMvc
+            .perform(get("/api/schedules/by-codes").param("codes", "ISIS1204,MATE1203"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Schedules-Complete", "true"))
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$[0][0].nrc").value("11060"))
+            .andExpect(jsonPath("$[0][1].nrc").value("22010"));
+
+        mockMvc
+            .perform(post("/api/schedules/by-codes").param("codes", "ISIS1204,MATE1203").param("withSeats", "true"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$[0][0].nrc").value("11060"));
+    }
+
+    @Test
+    void getByCodesOfAnUnknownCourse_shouldReturnBadRequest() throws Exception {
+        when(courseService.findSectionsByCourseCodes(List.of("XXXX0000"))).thenThrow(new InvalidRequestException("No sections found for course XXXX0000"));
+
+        mockMvc
+            .perform(get("/api/schedules/by-codes").param("codes", "XXXX0000"))
+            .andExpect(status().isBadRequest())
+            .andExpect(content().string("No sections found for course XXXX0000"));
+    }
+
+    @Test
+    void getByCodesWithMalformedApiData_shouldNotReturnBadRequest() throws Exception {
+        when(courseService.findSectionsByCourseCodes(List.of("ISIS1204"))).thenThrow(new NumberFormatException("For input string: \"tres\""));
+
+        try {
+            mockMvc.perform(get("/api/schedules/by-codes").param("codes", "ISIS1204"));
+            assert false : "Bad data from the API should not be answered as a bad request.";
+        } catch (ServletException e) {
+            assert e.getCause() instanceof NumberFormatException : "The error should reach the server error handling, but got " + e.getCause();
+        }
+    }
+}
@@ -0,0 +1,636 @@
+package com.cmolina12.senehorario_backend.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.cmolina12.senehorario_backend.config.CacheConfig;
+import com.cmolina12.senehorario_backend.domain.Meeting;
+import com.cmolina12.senehorario_backend.domain.Section;
+import com.cmolina12.senehorario_backend.domain.Course;
+import com.cmolina12.senehorario_backend.domain.CourseSuggestion;
+import com.cmolina12.senehorario_backend.models.ApiCourse;
+import com.cmolina12.senehorario_backend.models.Attr;
+import com.cmolina12.senehorario_backend.models.Instructor;
+import com.cmolina12.senehorario_backend.models.Schedule;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResponseExtractor;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+class CourseServiceTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    private final ExecutorService refreshExecutor = Executors.newFixedThreadPool(2); // Background refreshes.
+
+    private static final ObjectMapper JSON = new ObjectMapper().findAndRegisterModules(); // LocalTime of the meetings included.
+
+    @AfterEach
+    void shutdownExecutor() {
+        executor.shutdownNow();
+        refreshExecutor.shutdownNow();
+    }
+
+    // CourseService whose catalog lookups wait until every course of the request is being fetched,
+    // so the lookups only finish if they run at the same time.
+    private CourseService concurrentCatalog(int courses, List<String> fetched) {
+        CountDownLatch allStarted = new CountDownLatch(courses);
+        CourseService courseService = new CourseService() {
+            @Override
+            public List<Section> findSectionsByCourseCode(String code) {
+                fetched.add(code);
+                allStarted.countDown();
+                try {
+                    if (!allStarted.await(5, TimeUnit.SECONDS)) {
+                        throw new IllegalStateException("The courses were not fetched concurrently");
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                }
+                return code.startsWith("XXXX") ? List.of() : List.of(section(code));
+            }
+        };
+        ReflectionTestUtils.setField(courseService, "courseFetchExecutor", executor);
+        return courseService;
+    }
+
+    private static Section section(String code) {
+        Meeting meeting = new Meeting(DayOfWeek.MONDAY, LocalTime.of(9, 0), LocalTime.of(10, 0), "ML 101");
+        return new Section(code, "1", "202519", "1", "CAMPUS PRINCIPAL", List.of(meeting), List.of("Prof."), 5, 30);
+    }
+
+    @Test
+    void sectionsByCourseCodes_shouldFetchEveryCourseConcurrentlyAndKeepTheOrder() {
+        List<String> fetched = Collections.synchronizedList(new ArrayList<>());
+        CourseService courseService = concurrentCatalog(4, fetched);
+
+        List<List<Section>> candidates = courseService.findSectionsByCourseCodes(List.of("isis1204", "MATE1203", " FISI1018 ", "ISIS1204", "IIND2106"));
+
+        assert fetched.size() == 4 : "Each distinct course should be fetched once, but got " + fetched;
+        assert candidates.size() == 4 : "Expected one list of sections per distinct course, but got " + candidates.size();
+        assert candidates.get(0).get(0).getNrc().equals("ISIS1204") : "The first course should be the first code.";
+        assert candidates.get(1).get(0).getNrc().equals("MATE1203") : "The second course should be the second code.";
+        assert candidates.get(2).get(0).getNrc().equals("FISI1018") : "Codes should be trimmed.";
+        assert candidates.get(3).get(0).getNrc().equals("IIND2106") : "The repeated code should be skipped.";
+    }
+
+    @Test
+    void sectionsByCourseCodesWithAnUnknownCourse_shouldBeRejected() {
+        CourseService courseService = concurrentCatalog(2, Collections.synchronizedList(new ArrayList<>()));
+
+        try {
+            courseService.findSectionsByCourseCodes(List.of("ISIS1204", "XXXX0000"));
+            assert false : "A course without sections should not be accepted.";
+        } catch (InvalidRequestException expected) {
+            assert expected.getMessage().contains("XXXX0000") : "The message should name the course, but got " + expected.getMessage();
+        }
+    }
+
+    @Test
+    void sectionsByCourseCodesWithoutCodes_shouldBeRejected() {
+        CourseService courseService = concurrentCatalog(0, Collections.synchronizedList(new ArrayList<>()));
+
+        try {
+            courseService.findSectionsByCourseCodes(List.of(" ", ""));
+            assert false : "A request without codes should not be accepted.";
+        } catch (InvalidRequestException expected) {
+            // Expected, there is nothing to schedule.
+        }
+    }
+
+    @Test
+    void sectionsByTooManyCourseCodes_shouldBeRejectedWithoutFetching() {
+        List<String> requested = Collections.synchronizedList(new ArrayList<>());
+        CourseService courseService = concurrentCatalog(0, requested);
+
+        List<String> codes = new ArrayList<>();
+        for (int i = 0; i <= CourseService.MAX_COURSE_CODES; i++) {
+            codes.add("ISIS" + (1000 + i));
+        }
+        try {
+            courseService.findSectionsByCourseCodes(codes);
+            assert false : "More than " + CourseService.MAX_COURSE_CODES + " courses should not be accepted.";
+        } catch (InvalidRequestException expected) {
+            // Expected, the request would fan out to too many API calls.
+        }
+
+        assert requested.isEmpty() : "No course should be fetched, but got " + requested;
+    }
+
+    // CourseService backed by a mocked API and the cache of CacheConfig.
+    private CourseService cachedCatalog(RestTemplate restTemplate, MeterRegistry meterRegistry, long maxSections) {
+        CourseService courseService = new CourseService();
+        ReflectionTestUtils.setField(courseService, "restTemplate", restTemplate);
+        ReflectionTestUtils.setField(courseService, "apiBaseUrl", "http://catalog.test/api/courses");
+        ReflectionTestUtils.setField(courseService, "catalogSearchCache", new CacheConfig().catalogSearchCache(Duration.ofHours(24), maxSections, meterRegistry));
+        ReflectionTestUtils.setField(courseService, "catalogSnapshot", new CatalogSnapshot());
+        ReflectionTestUtils.setField(courseService, "snapshotEnabled", true);
+        ReflectionTestUtils.setField(courseService, "courseFetchExecutor", executor);
+        ReflectionTestUtils.setField(courseService, "catalogRefreshExecutor", refreshExecutor);
+        return courseService;
+    }
+
+    @Test
+    void normalizeQuery_shouldIgnoreCaseAccentsAndSpaces() {
+        assert CourseService.normalizeQuery(" cálculo  diferencial ").equals("CALCULO DIFERENCIAL") : "Got " + CourseService.normalizeQuery(" cálculo  diferencial ");
+        assert CourseService.normalizeQuery("Física").equals(CourseService.normalizeQuery("FISICA")) : "Accents should not matter.";
+        assert CourseService.normalizeQuery(null).isEmpty() : "A missing query should be empty.";
+    }
+
+    @Test
+    void equivalentQueries_shouldBeFetchedFromTheApiOnce() {
+        RestTemplate restTemplate = mock(RestTemplate.class);
+        when(restTemplate.getForObject(anyString(), eq(ApiCourse[].class), any(Object[].class))).thenReturn(new ApiCourse[] { new ApiCourse() });
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        CourseService courseService = cachedCatalog(restTemplate, meterRegistry, 100);
+
+        ApiCourse[] first = courseService.fetchRawSections("cálculo");
+        ApiCourse[] second = courseService.fetchRawSections(" CALCULO ");
+
+        verify(restTemplate, times(1)).getForObject(anyString(), eq(ApiCourse[].class), any(Object[].class));
+        assert first == second : "The second query should be served from the cache.";
+
+        double hits = meterRegistry.get("cache.gets").tag("cache", "catalog.search").tag("result", "hit").functionCounter().count();
+        double misses = meterRegistry.get("cache.gets").tag("cache", "catalog.search").tag("result", "miss").functionCounter().count();
+        assert hits == 1 && misses == 1 : "Expected 1 hit and 1 miss, but got " + hits + " and " + misses;
+    }
+
+    @Test
+    void cacheOverItsSectionBound_shouldEvictEntries() {
+        RestTemplate restTemplate = mock(RestTemplate.class);
+        when(restTemplate.getForObject(anyString(), eq(ApiCourse[].class), any(Object[].class))).thenAnswer(invocation -> new ApiCourse[] { new ApiCourse(), new ApiCourse() });
+        CourseService courseService = cachedCatalog(restTemplate, new SimpleMeterRegistry(), 10); // Room for 3 responses of 2 sections.
+
+        for (int i = 0; i < 20; i++) {
+            courseService.fetchRawSections("ISIS" + (1000 + i));
+        }
+        Cache<?, ?> cache = (Cache<?, ?>) ReflectionTestUtils.getField(courseService, "catalogSearchCache");
+        cache.cleanUp(); // Evictions run asynchronously.
+
+        assert cache.estimatedSize() <= 3 : "The cache should stay within its bound, but holds " + cache.estimatedSize() + " responses.";
+        assert cache.stats().evictionCount() > 0 : "Some responses should have been evicted.";
+    }
+
+    // Waits until the other callers are blocked on the call already in flight.
+    private static void awaitWaiting(List<Future<?>> callers, Thread[] threads, CountDownLatch started) throws InterruptedException {
+        assert started.await(5, TimeUnit.SECONDS) : "Every caller should have started.";
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        for (Thread thread : threads) {
+            while (thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TIMED_WAITING && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+        }
+        assert callers.stream().noneMatch(Future::isDone) : "Every caller should be waiting for the call in flight.";
+    }
+
+    // Starts the callers of fetchRawSections with the same query on their own threads, recording the threads.
+    private List<Future<ApiCourse[]>> concurrentFetches(CourseService courseService, Thread[] threads, CountDownLatch started) {
+        List<Future<ApiCourse[]>> futures = new ArrayList<>();
+        for (int i = 0; i < threads.length; i++) {
+            int caller = i;
+            String query = i % 2 == 0 ? "cálculo" : " CALCULO "; // Equivalent queries are coalesced too.
+            futures.add(executor.submit(() -> {
+                threads[caller] = Thread.currentThread();
+                started.countDown();
+                return courseService.fetchRawSections(query);
+            }));
+        }
+        return futures;
+    }
+
+    @Test
+    void concurrentMissesOfTheSameQuery_shouldShareOneApiCall() throws Exception {
+        CountDownLatch called = new CountDownLatch(1);
+        CountDownLatch respond = new CountDownLatch(1);
+        ApiCourse[] response = { new ApiCourse() };
+        RestTemplate restTemplate = mock(RestTemplate.class);
+        when(restTemplate.getForObject(anyString(), eq(ApiCourse[].class), any(Object[].class))).thenAnswer(invocation -> {
+            called.countDown();
+            respond.await(5, TimeUnit.SECONDS); // The API is slow, the other callers arrive meanwhile.
+            return response;
+        });
+        CourseService courseService = cachedCatalog(restTemplate, new SimpleMeterRegistry(), 100);
+
+        Thread[] threads = new Thread[8];
+        CountDownLatch started = new CountDownLatch(threads.length);
+        List<Future<ApiCourse[]>> futures = concurrentFetches(courseService, threads, started);
+        assert called.await(5, TimeUnit.SECONDS) : "The API should have been called.";
+        awaitWaiting(new ArrayList<>(futures), threads, started);
+        respond.countDown();
+
+        for (Future<ApiCourse[]> future : futures) {
+            assert future.get(5, TimeUnit.SECONDS) == response : "Every caller should get the response of the shared call.";
+        }
+        verify(restTemplate, times(1)).getForObject(anyString(), eq(ApiCourse[].class), any(Object[].class));
+    }
+
+    @Test
+    void failedSharedCall_shouldFailEveryWaiterAndNotBeRemembered() throws Exception {
+        CountDownLatch called = new CountDownLatch(1);
+        CountDownLatch respond = new CountDownLatch(1);
+        RestTemplate restTemplate = mock(RestTemplate.class);
+        when(restTemplate.getForObject(anyString(), eq(ApiCourse[].class), any(Object[].class)))
+            .thenAnswer(invocation -> {
+                called.countDown();
+                respond.await(5, TimeUnit.SECONDS);
+                throw new ResourceAccessException("Connection refused");
+            })
+            .thenReturn(new ApiCourse[] { new ApiCourse() });
+        CourseService courseService = cachedCatalog(restTemplate, new SimpleMeterRegistry(), 100);
+
+        Thread[] threads = new Thread[4];
+        CountDownLatch started = new CountDownLatch(threads.length);
+        List<Future<ApiCourse[]>> futures = concurrentFetches(courseService, threads, started);
+        assert called.await(5, TimeUnit.SECONDS) : "The API should have been called.";
+        awaitWaiting(new ArrayList<>(futures), threads, started);
+        respond.countDown();
+
+        for (Future<ApiCourse[]> future : futures) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                assert false : "Every caller should get the failure of the shared call.";
+            } catch (ExecutionException e) {
+                assert e.getCause() instanceof ResourceAccessException : "Expected the failure of the API, but got " + e.getCause();
+            }
+        }
+
+        assert courseService.fetchRawSections("calculo").length == 1 : "The next call should go to the API again.";
+        verify(restTemplate, times(2)).getForObject(anyString(), eq(ApiCourse[].class), any(Object[].class));
+    }
+
+    @Test
+    void staleResponse_shouldBeServedAtOnceAndRefreshedInTheBackground() throws Exception {
+        CountDownLatch refreshing = new CountDownLatch(1);
+        CountDownLatch respond = new CountDownLatch(1);
+        ApiCourse[] before = { new ApiCourse() };
+        ApiCourse[] after = { new ApiCourse(), new ApiCourse() };
+        RestTemplate restTemplate = mock(RestTemplate.class);
+        when(restTemplate.getForObject(anyString(), eq(ApiCourse[].class), any(Object[].class)))
+            .thenReturn(before)
+            .thenAnswer(invocation -> {
+                refreshing.countDown();
+                try {
+                    respond.await(5, TimeUnit.SECONDS); // The API is slow, callers should not notice.
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt(); // Like the real client, which never throws InterruptedException.
+                }
+                return after;
+            });
+        CourseService courseService = cachedCatalog(restTemplate, new SimpleMeterRegistry(), 100);
+        ReflectionTestUtils.setField(courseService, "freshFor", Duration.ZERO); // Every response is stale right away.
+
+        assert courseService.fetchRawSections("calculo") == before : "The first call should wait for the API.";
+        assert courseService.fetchRawSections("calculo") == before : "The stale response should be served without waiting for the refresh.";
+        assert courseService.fetchRawSections("calculo") == before : "The stale response should be served while the refresh runs.";
+        assert refreshing.await(5, TimeUnit.SECONDS) : "The stale response should be refreshed.";
+        verify(restTemplate, times(2)).getForObject(anyString(), eq(ApiCourse[].class), any(Object[].class)); // One refresh, however many stale callers.
+        respond.countDown();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        ApiCourse[] served = before;
+        while (served == before && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+            served = courseService.fetchRawSections("calculo");
+        }
+        assert served == after : "The refreshed response should be served once the refresh finishes.";
+
+        refreshExecutor.shutdown(); // Every call above started another refresh, they finish before the test ends.
+        assert refreshExecutor.awaitTermination(5, TimeUnit.SECONDS) : "The background refreshes should finish.";
+    }
+
+    @Test
+    void failingApi_shouldServeTheLastKnownGoodResponse() {
+        ApiCourse[] known = { new ApiCourse() };
+        RestTemplate restTemplate = mock(RestTemplate.class);
+        when(restTemplate.getForObject(anyString(), eq(ApiCourse[].class), any(Object[].class)))
+            .thenReturn(known)
+            .thenThrow(new ResourceAccessException("Connection refused"));
+        CourseService courseService = cachedCatalog(restTemplate, new SimpleMeterRegistry(), 100);
+        ReflectionTestUtils.setField(courseService, "freshFor", Duration.ZERO);
+        ReflectionTestUtils.setField(courseService, "maxStale", Duration.ZERO); // Every response is too old to be served without asking.
+
+        courseService.fetchRawSections("calculo");
+
+        assert courseService.fetchRawSections("calculo") == known : "The last known good response should be served when the API fails.";
+        try {
+            courseService.fetchRawSections("fisica");
+            assert false : "A query never fetched should fail with the API.";
+        } catch (ResourceAccessException e) {
+            // Expected, there is nothing to fall back to.
+        }
+    }
+
+    // A section of the catalog API meeting on Monday from 9:00 to 10:20.
+    private static ApiCourse apiSection(String clazz, String course, String title, String nrc) {
+        Schedule schedule = new Schedule();
+        schedule.setL("L");
+        schedule.setTime_ini("0900");
+        schedule.setTime_fin("1020");
+        schedule.setBuilding("ML");
+        schedule.setClassroom("101");
+        Instructor instructor = new Instructor();
+        instructor.setName("PEREZ JUAN");
+
+        ApiCourse section = new ApiCourse();
+        section.setClazz(clazz);
+        section.setCourse(course);
+        section.setTitle(title);
+        section.setCredits("3");
+        section.setNrc(nrc);
+        section.setSection("1");
+        section.setTerm("202519");
+        section.setPtrm("1");
+        section.setCampus("CAMPUS PRINCIPAL");
+        section.setSeatsavail("5");
+        section.setMaxenrol("30");
+        section.setSchedules(List.of(schedule));
+        section.setInstructors(List.of(instructor));
+        return section;
+    }
+
+    private static final ApiCourse[] TERM = {
+        apiSection("MATE", "1203", "CÁLCULO DIFERENCIAL", "10001"),
+        apiSection("MATE", "1203", "CÁLCULO DIFERENCIAL", "10002"),
+        apiSection("MATE", "1214", "CÁLCULO INTEGRAL", "10003"),
+        apiSection("ISIS", "1204", "PROGRAMACIÓN ORIENTADA A OBJETOS", "20001"),
+    };
+
+    @Test
+    void loadedSnapshot_shouldAnswerTheSearchesWithoutTheApi() {
+        RestTemplate restTemplate = mock(RestTemplate.class);
+        when(restTemplate.getForObject(anyString(), eq(ApiCourse[].class), any(Object[].class))).thenReturn(TERM);
+        CourseService courseService = cachedCatalog(restTemplate, new SimpleMeterRegistry(), 100);
+
+        courseService.refreshCatalogSnapshot();
+        verify(restTemplate, times(1)).getForObject(anyString(), eq(ApiCourse[].class), any(Object[].class)); // The whole term, once.
+
+        List<Course> calculo = courseService.getDomainCourses("calculo");
+        ApiCourse[] mate = courseService.fetchRawSections("MATE12");
+        List<Section> isis = courseService.findSectionsByCourseCode("isis1204");
+
+        verify(restTemplate, times(1)).getForObject(anyString(), eq(ApiCourse[].class), any(Object[].class)); // No more calls after the load.
+        assert calculo.size() == 2 : "Both calculus courses should match the title, but got " + calculo.size();
+        assert calculo.get(0).getSections().size() == 2 : "MATE1203 should have its two sections.";
+        assert mate.length == 3 : "The code prefix should match the three MATE sections, but got " + mate.length;
+        assert isis.size() == 1 && isis.get(0).getNrc().equals("20001") : "The course code should find its section.";
+        assert courseService.getDomainCourses("ORIENTADA").get(0).getCode().equals("ISIS1204") : "Words in the middle of the title should match.";
+    }
+
+    @Test
+    void courseMissingFromTheSnapshot_shouldBeFetchedThroughTheCache() {
+        ApiCourse newCourse = apiSection("ISIS", "1205", "ESTRUCTURAS DE DATOS", "20002"); // Opened after the snapshot was loaded.
+        RestTemplate restTemplate = mock(RestTemplate.class);
+        when(restTemplate.getForObject(anyString(), eq(ApiCourse[].class), eq(""))).thenReturn(TERM);
+        when(restTemplate.getForObject(anyString(), eq(ApiCourse[].class), eq("ISIS1205"))).thenReturn(new ApiCourse[] { newCourse });
+        when(restTemplate.getForObject(anyString(), eq(ApiCourse[].class), eq("ISIS120"))).thenReturn(new ApiCourse[] { TERM[3], newCourse });
+        CourseService courseService = cachedCatalog(restTemplate, new SimpleMeterRegistry(), 100);
+        courseService.refreshCatalogSnapshot();
+
+        List<Section> first = courseService.findSectionsByCourseCode("isis1205");
+        List<Section> second = courseService.findSectionsByCourseCode("ISIS1205");
+        List<Section> prefix = courseService.findSectionsByCourseCode("ISIS120");
+
+        verify(restTemplate, times(1)).getForObject(anyString(), eq(ApiCourse[].class), eq("ISIS1205")); // The second lookup hits the cache.
+        assert first.size() == 1 && first.get(0).getNrc().equals("20002") : "The course missing from the snapshot should come from the API.";
+        assert second.size() == 1 && second != first : "Every caller should get its own list.";
+        assert prefix.isEmpty() : "A code prefix should not return another course, but got " + prefix;
+    }
+
+    @Test
+    void latestSections_shouldComeFromTheApiEvenWithTheSnapshotLoaded() throws Exception {
+        byte[] term = JSON.writeValueAsBytes(TERM);
+        RestTemplate restTemplate = mock(RestTemplate.class);
+        when(restTemplate.getForObject(anyString(), eq(ApiCourse[].class), any(Object[].class))).thenReturn(TERM);
+        when(restTemplate.execute(anyString(), eq(HttpMethod.GET), isNull(), ArgumentMatchers.<ResponseExtractor<List<Course>>>any(), any(Object[].class)))
+            .thenAnswer(invocation -> ((ResponseExtractor<?>) invocation.getArgument(3)).extractData(new MockClientHttpResponse(term, HttpStatus.OK)));
+        CourseService courseService = cachedCatalog(restTemplate, new SimpleMeterRegistry(), 100);
+        courseService.refreshCatalogSnapshot();
+
+        List<Section> sections = courseService.fetchLatestSections("mate1203");
+
+        verify(restTemplate, times(1)).getForObject(anyString(), eq(ApiCourse[].class), any(Object[].class)); // The term.
+        verify(restTemplate, times(1)).execute(anyString(), eq(HttpMethod.GET), isNull(), ArgumentMatchers.<ResponseExtractor<List<Course>>>any(), eq("MATE1203")); // The course, streamed.
+        assert sections.size() == 2 : "Only the sections of MATE1203 should be returned, but got " + sections.size();
+        assert courseService.fetchLatestSections("XXXX0000").isEmpty() : "An unknown course should have no sections.";
+    }
+
+    @Test
+    void concurrentLatestSectionsOfTheSameCourse_shouldShareOneApiCall() throws Exception {
+        byte[] term = JSON.writeValueAsBytes(TERM);
+        CountDownLatch called = new CountDownLatch(1);
+        CountDownLatch respond = new CountDownLatch(1);
+        RestTemplate restTemplate = mock(RestTemplate.class);
+        when(restTemplate.execute(anyString(), eq(HttpMethod.GET), isNull(), ArgumentMatchers.<ResponseExtractor<List<Course>>>any(), any(Object[].class))).thenAnswer(invocation -> {
+            called.countDown();
+            respond.await(5, TimeUnit.SECONDS); // The API is slow, the other callers arrive meanwhile.
+            return ((ResponseExtractor<?>) invocation.getArgument(3)).extractData(new MockClientHttpResponse(term, HttpStatus.OK));
+        });
+        CourseService courseService = cachedCatalog(restTemplate, new SimpleMeterRegistry(), 100);
+
+        Thread[] threads = new Thread[4];
+        CountDownLatch started = new CountDownLatch(threads.length);
+        List<Future<List<Section>>> futures = new ArrayList<>();
+        for (int i = 0; i < threads.length; i++) {
+            int caller = i;
+            futures.add(executor.submit(() -> {
+                threads[caller] = Thread.currentThread();
+                started.countDown();
+                return courseService.fetchLatestSections("MATE1203");
+            }));
+        }
+        assert called.await(5, TimeUnit.SECONDS) : "The API should have been called.";
+        awaitWaiting(new ArrayList<>(futures), threads, started);
+        respond.countDown();
+
+        List<List<Section>> results = new ArrayList<>();
+        for (Future<List<Section>> future : futures) {
+            List<Section> sections = future.get(5, TimeUnit.SECONDS);
+            assert sections.size() == 2 : "Every caller should get the two sections of MATE1203, but got " + sections.size();
+            assert results.stream().noneMatch(other -> other == sections) : "Every caller should get its own list.";
+            results.add(sections);
+        }
+        verify(restTemplate, times(1)).execute(anyString(), eq(HttpMethod.GET), isNull(), ArgumentMatchers.<ResponseExtractor<List<Course>>>any(), any(Object[].class));
+    }
+
+    @Test
+    void streamedResponse_shouldGiveTheCoursesOfTheParsedResponse() throws Exception {
+        ApiCourse twoDays = apiSection("IIND", "2201", "CONTROL DE PRODUCCIÓN", "30001");
+        Schedule tuesdayThursday = new Schedule();
+        tuesdayThursday.setM("M");
+        tuesdayThursday.setJ("J");
+        tuesdayThursday.setTime_ini("1400");
+        tuesdayThursday.setTime_fin("1520");
+        tuesdayThursday.setBuilding("W");
+        tuesdayThursday.setClassroom("505");
+        Schedule noDays = new Schedule(); // Virtual sections come without days or times.
+        twoDays.setSchedules(List.of(twoDays.getSchedules().get(0), tuesdayThursday, noDays));
+        Instructor three = new Instructor();
+        three.setName("GOMEZ SANCHEZ CAMILA");
+        twoDays.setInstructors(List.of(twoDays.getInstructors().get(0), three));
+        twoDays.setSeatsavail("45"); // More than the total, clamped.
+        twoDays.setAttr(List.of(new Attr()));
+
+        List<ApiCourse> sections = new ArrayList<>(List.of(TERM));
+        sections.add(1, twoDays); // Sections of the same course are not always together.
+        ApiCourse[] response = sections.toArray(new ApiCourse[0]);
+        CourseService courseService = new CourseService();
+
+        List<Course> streamed = CatalogStreamReader.readCourses(new ByteArrayInputStream(JSON.writeValueAsBytes(response)));
+        List<Course> mapped = courseService.toDomainCourses(response);
+
+        assert JSON.valueToTree(streamed).equals(JSON.valueToTree(mapped)) : "The streamed courses should be the mapped ones, but got " + JSON.writeValueAsString(streamed);
+        assert CatalogStreamReader.readCourses(new ByteArrayInputStream("[]".getBytes(StandardCharsets.UTF_8))).isEmpty() : "An empty response has no courses.";
+    }
+
+    @Test
+    void failedRefresh_shouldKeepThePreviousSnapshot() {
+        RestTemplate restTemplate = mock(RestTemplate.class);
+        when(restTemplate.getForObject(anyString(), eq(ApiCourse[].class), any(Object[].class)))
+            .thenReturn(TERM)
+            .thenThrow(new ResourceAccessException("Connection refused"))
+            .thenReturn(new ApiCourse[0]);
+        CourseService courseService = cachedCatalog(restTemplate, new SimpleMeterRegistry(), 100);
+
+        courseService.refreshCatalogSnapshot();
+        courseService.refreshCatalogSnapshot(); // The API is down.
+        courseService.refreshCatalogSnapshot(); // The API answers with nothing.
+
+        assert courseService.getDomainCourses("").size() == 3 : "The catalog loaded first should still be served.";
+    }
+
+    @Test
+    void disabledSnapshot_shouldKeepAskingTheApi() {
+        RestTemplate restTemplate = mock(RestTemplate.class);
+        when(restTemplate.getForObject(anyString(), eq(ApiCourse[].class), any(Object[].class))).thenReturn(TERM);
+        CourseService courseService = cachedCatalog(restTemplate, new SimpleMeterRegistry(), 100);
+        ReflectionTestUtils.setField(courseService, "snapshotEnabled", false);
+
+        courseService.refreshCatalogSnapshot();
+        verify(restTemplate, never()).getForObject(anyString(), eq(ApiCourse[].class), any(Object[].class));
+
+        courseService.getDomainCourses("calculo");
+        verify(restTemplate, times(1)).getForObject(anyString(), eq(ApiCourse[].class), any(Object[].class));
+    }
+
+    @Test
+    void catalogIndex_shouldMatchExactlyLikeScanningEveryCourse() {
+        Random random = new Random(17);
+        String[] words = { "CALCULO", "DIFERENCIAL", "INTEGRAL", "FISICA", "PROGRAMACION", "DE", "LA", "ESTRUCTURAS", "DATOS", "ALGEBRA", "LINEAL", "I", "II" };
+        String[] prefixes = { "MATE", "ISIS", "FISI", "IIND", "MBIO" };
+
+        int courses = 300;
+        String[] codes = new String[courses];
+        String[] titles = new String[courses];
+        for (int i = 0; i < courses; i++) {
+            codes[i] = prefixes[random.nextInt(prefixes.length)] + (1000 + random.nextInt(3000));
+            StringBuilder title = new StringBuilder(words[random.nextInt(words.length)]);
+            for (int w = random.nextInt(4); w > 0; w--) {
+                title.append(' ').append(words[random.nextInt(words.length)]);
+            }
+            titles[i] = title.toString();
+        }
+        CatalogIndex index = new CatalogIndex(codes, titles);
+
+        for (int q = 0; q < 2_000; q++) {
+            // Pieces of titles and codes of any length, so some queries are shorter than a trigram or match nothing.
+            String source = random.nextBoolean() ? titles[random.nextInt(courses)] : codes[random.nextInt(courses)] + "X";
+            int from = random.nextInt(source.length());
+            String query = source.substring(from, from + random.nextInt(Math.min(8, source.length() - from) + 1));
+
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < courses; i++) {
+                if (codes[i].startsWith(query) || titles[i].contains(query)) {
+                    expected.add(i);
+                }
+            }
+            List<Integer> found = new ArrayList<>();
+            for (int i : index.search(query)) {
+                found.add(i);
+            }
+
+            assert found.equals(expected) : "Query '" + query + "': expected " + expected + ", but got " + found;
+        }
+    }
+
+    @Test
+    void suggestions_shouldRankCodesThenTitleStartsThenWordsAndBeBounded() {
+        RestTemplate restTemplate = mock(RestTemplate.class);
+        when(restTemplate.getForObject(anyString(), eq(ApiCourse[].class), any(Object[].class))).thenReturn(TERM);
+        CourseService courseService = cachedCatalog(restTemplate, new SimpleMeterRegistry(), 100);
+        courseService.refreshCatalogSnapshot();
+
+        List<CourseSuggestion> calc = courseService.suggestCourses("cálc", 10);
+        assert calc.size() == 2 : "Both calculus courses should be suggested, but got " + calc.size();
+        assert calc.get(0).getCode().equals("MATE1214") : "Among titles starting with the query, the shorter title should come first.";
+        assert calc.get(1).getSections() == 2 : "The suggestion should tell how many sections the course has.";
+
+        assert courseService.suggestCourses("mate1203", 10).get(0).getCode().equals("MATE1203") : "The exact code should come first.";
+        assert courseService.suggestCourses("objetos", 10).get(0).getCode().equals("ISIS1204") : "A word of the title should match.";
+        assert courseService.suggestCourses("a", 1).size() == 1 : "The limit should bound the suggestions.";
+        assert courseService.suggestCourses("  ", 10).isEmpty() : "A blank query should suggest nothing.";
+
+        try {
+            courseService.suggestCourses("calc", 0);
+            assert false : "A limit of zero should not be accepted.";
+        } catch (InvalidRequestException expected) {
+            // Expected, there is nothing to return.
+        }
+    }
+
+    @Test
+    void malformedApiData_shouldNotBeReportedAsAnInvalidRequest() {
+        ApiCourse malformed = apiSection("ISIS", "1204", "PROGRAMACIÓN ORIENTADA A OBJETOS", "20001");
+        malformed.setCredits("tres");
+
+        try {
+            new CourseService().toDomainCourses(new ApiCourse[] { malformed });
+            assert false : "Credits that are not a number should not be accepted.";
+        } catch (IllegalArgumentException e) {
+            assert !(e instanceof InvalidRequestException) : "Bad data from the API is not the client's fault, it should not become a 400.";
+        }
+    }
+
+    @Test
+    void suggestionsBeforeTheSnapshotIsLoaded_shouldRankTheApiResults() {
+        RestTemplate restTemplate = mock(RestTemplate.class);
+        when(restTemplate.getForObject(anyString(), eq(ApiCourse[].class), any(Object[].class))).thenReturn(TERM);
+        CourseService courseService = cachedCatalog(restTemplate, new SimpleMeterRegistry(), 100);
+
+        List<CourseSuggestion> suggestions = courseService.suggestCourses("ISIS", 10);
+
+        assert suggestions.size() == 1 && suggestions.get(0).getCode().equals("ISIS1204") : "Only the API results matching the query should be suggested.";
+    }
+}
@@ -0,0 +1,153 @@
+package com.cmolina12.senehorario_backend.service;
+
+import static com.cmolina12.senehorario_backend.service.ScheduleServiceTest.asSet;
+import static com.cmolina12.senehorario_backend.service.ScheduleServiceTest.randomCandidates;
+
+import com.cmolina12.senehorario_backend.domain.Meeting;
+import com.cmolina12.senehorario_backend.domain.ScheduleConstraints;
+import com.cmolina12.senehorario_backend.domain.ScheduleResult;
+import com.cmolina12.senehorario_backend.domain.Section;
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+// Every search mode runs its own engine, and all of them must return exactly the schedules
+// of the REFERENCE engine, whatever the order. The reference works on the Meeting objects only
+// (one group per section, constraints checked on every meeting), so a bug in the packing, the
+// grouping or the masking of the constraints makes these tests fail.
+// A new engine only needs a new SearchMode to be checked by these tests.
+
+class ScheduleEngineConformanceTest {
+
+    // Courses and sections per course of the random requests: few, many, and one course only.
+    private static final int[][] SHAPES = { { 3, 4 }, { 5, 8 }, { 6, 8 }, { 1, 6 } };
+
+    private static final long MAX_SCHEDULES = 1_000_000; // Result cap far above the random requests, RANKED only runs with one.
+
+    @ParameterizedTest
+    @EnumSource(SearchMode.class)
+    void everyEngine_shouldReturnTheSchedulesOfTheReference(SearchMode mode) {
+        ScheduleService scheduleService = new ScheduleService();
+
+        for (int[] shape : SHAPES) {
+            for (int seed = 0; seed < 10; seed++) {
+                List<List<Section>> candidates = randomCandidates(new Random(seed), shape[0], shape[1]);
+
+                List<List<Section>> reference = scheduleService.generateAllSchedules(candidates, SearchMode.REFERENCE);
+                List<List<Section>> schedules = scheduleService.generateSchedules(candidates, mode, new SearchGuard(null, MAX_SCHEDULES)).getSchedules();
+
+                assert schedules.size() == reference.size() : mode + ", seed " + seed + ": expected " + reference.size() +
+                " schedules, but got " + schedules.size();
+                assert asSet(schedules).equals(asSet(reference)) : mode + ", seed " + seed + ": the schedules should be the ones of the reference.";
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(SearchMode.class)
+    void everyEngine_shouldApplyTheConstraintsLikeTheReference(SearchMode mode) {
+        ScheduleService scheduleService = new ScheduleService();
+        ScheduleConstraints constraints = new ScheduleConstraints(
+            LocalTime.of(9, 0),
+            LocalTime.of(16, 0),
+            List.of(DayOfWeek.FRIDAY),
+            null,
+            true,
+            List.of("WEDNESDAY 12:00-14:00")
+        );
+
+        for (int seed = 0; seed < 10; seed++) {
+            List<List<Section>> candidates = randomCandidates(new Random(seed), 4, 12);
+
+            List<List<Section>> reference = scheduleService.generateSchedules(candidates, constraints, SearchMode.REFERENCE, SearchGuard.unlimited()).getSchedules();
+            List<List<Section>> schedules = scheduleService.generateSchedules(candidates, constraints, mode, new SearchGuard(null, MAX_SCHEDULES)).getSchedules();
+
+            assert schedules.size() == reference.size() : mode + ", seed " + seed + ": expected " + reference.size() +
+            " constrained schedules, but got " + schedules.size();
+            assert asSet(schedules).equals(asSet(reference)) : mode + ", seed " + seed + ": the constrained schedules should be the ones of the reference.";
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(SearchMode.class)
+    void everyEngine_shouldGroupLikeTheReference(SearchMode mode) {
+        ScheduleService scheduleService = new ScheduleService();
+        List<List<Section>> candidates = randomCandidates(new Random(11), 5, 12); // Many sections share their times.
+
+        List<List<Section>> reference = scheduleService.generateAllSchedules(candidates, SearchMode.REFERENCE);
+        List<List<List<Section>>> grouped = scheduleService.generateGroupedSchedules(candidates, ScheduleConstraints.none(), mode, new SearchGuard(null, MAX_SCHEDULES)).getSchedules();
+
+        // Every grouped schedule stands for all the combinations of its sections.
+        List<List<Section>> expanded = new ArrayList<>();
+        for (List<List<Section>> schedule : grouped) {
+            List<List<Section>> combinations = List.of(List.of());
+            for (List<Section> group : schedule) {
+                assert group.stream().allMatch(section -> sameTimes(section, group.get(0))) : mode + ": the sections of a group should meet at the same times.";
+                List<List<Section>> next = new ArrayList<>();
+                for (List<Section> combination : combinations) {
+                    for (Section section : group) {
+                        List<Section> longer = new ArrayList<>(combination);
+                        longer.add(section);
+                        next.add(longer);
+                    }
+                }
+                combinations = next;
+            }
+            expanded.addAll(combinations);
+        }
+
+        assert expanded.size() == reference.size() : mode + ": the grouped schedules should stand for " + reference.size() + " schedules, but stand for " + expanded.size();
+        assert asSet(expanded).equals(asSet(reference)) : mode + ": the grouped schedules should stand for the schedules of the reference.";
+        if (mode != SearchMode.REFERENCE) {
+            assert grouped.size() < reference.size() : mode + ": sections meeting at the same times should be grouped.";
+        }
+    }
+
+    // Same meetings in the same order, compared on the Meeting objects.
+    private static boolean sameTimes(Section a, Section b) {
+        if (a.getMeetings().size() != b.getMeetings().size()) {
+            return false;
+        }
+        for (int i = 0; i < a.getMeetings().size(); i++) {
+            Meeting m1 = a.getMeetings().get(i);
+            Meeting m2 = b.getMeetings().get(i);
+            if (m1.getDay() != m2.getDay() || !m1.getStart().equals(m2.getStart()) || !m1.getEnd().equals(m2.getEnd())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @ParameterizedTest
+    @EnumSource(SearchMode.class)
+    void everyEngine_shouldStopAtTheResultCapWithValidSchedules(SearchMode mode) {
+        ScheduleService scheduleService = new ScheduleService();
+        List<List<Section>> candidates = randomCandidates(new Random(42), 6, 8);
+        Set<List<Section>> reference = asSet(scheduleService.generateAllSchedules(candidates, SearchMode.REFERENCE));
+
+        ScheduleResult result = scheduleService.generateSchedules(candidates, mode, new SearchGuard(null, 25));
+
+        assert !result.isComplete() : mode + ": the result cap should truncate the list.";
+        assert result.getSchedules().size() == 25 : mode + ": expected 25 schedules, but got " + result.getSchedules().size();
+        assert reference.containsAll(result.getSchedules()) : mode + ": every schedule should be one of the reference.";
+        assert asSet(result.getSchedules()).size() == 25 : mode + ": no schedule should be returned twice.";
+    }
+
+    @ParameterizedTest
+    @EnumSource(SearchMode.class)
+    void everyEngine_shouldStreamTheSchedulesItReturns(SearchMode mode) {
+        ScheduleService scheduleService = new ScheduleService();
+        List<List<Section>> candidates = randomCandidates(new Random(7), 5, 8);
+
+        List<List<Section>> streamed = new ArrayList<>();
+        scheduleService.forEachSchedule(candidates, mode, new SearchGuard(null, MAX_SCHEDULES), streamed::add);
+
+        assert streamed.equals(scheduleService.generateSchedules(candidates, mode, new SearchGuard(null, MAX_SCHEDULES)).getSchedules()) : mode + ": streaming should hand over the same schedules in the same order.";
+        assert scheduleService.countSchedules(candidates) == streamed.size() : mode + ": the count should match the number of schedules.";
+    }
+}
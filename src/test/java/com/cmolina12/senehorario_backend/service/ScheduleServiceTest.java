@@ -1,10 +1,21 @@
 package com.cmolina12.senehorario_backend.service;
 
+import com.cmolina12.senehorario_backend.domain.GroupedScheduleResult;
 import com.cmolina12.senehorario_backend.domain.Meeting;
+import com.cmolina12.senehorario_backend.domain.ScheduleConstraints;
+import com.cmolina12.senehorario_backend.domain.SchedulePage;
+import com.cmolina12.senehorario_backend.domain.ScheduleResult;
+import com.cmolina12.senehorario_backend.domain.TruncationReason;
 import com.cmolina12.senehorario_backend.domain.Section;
 import java.time.DayOfWeek;
+import java.time.Duration;
 import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
 import org.junit.jupiter.api.Test;
 
 // ✅ CORE / CRITICAL TEST SCENARIOS
@@ -284,5 +295,600 @@ class ScheduleServiceTest {
             .contains(course2) : "First schedule should contain course 2.";
     }
 
+    // 2. Multiple courses with multiple sections (some overlap, some valid)
+    @Test
+    void multipleCoursesWithMultipleSections_shouldOnlyReturnNonOverlappingCombinations() {
+        Section a1 = makeFullSection("30001", "1", "202519", "1", "CAMPUS PRINCIPAL", DayOfWeek.MONDAY, "08:00", "09:20", "ML 101", List.of("Prof. A"));
+        Section a2 = makeFullSection("30002", "2", "202519", "1", "CAMPUS PRINCIPAL", DayOfWeek.MONDAY, "09:30", "10:50", "ML 102", List.of("Prof. A"));
+        Section b1 = makeFullSection("30003", "1", "202519", "1", "CAMPUS PRINCIPAL", DayOfWeek.MONDAY, "08:30", "09:50", "W 101", List.of("Prof. B")); // Overlaps a1 and a2.
+        Section b2 = makeFullSection("30004", "2", "202519", "1", "CAMPUS PRINCIPAL", DayOfWeek.MONDAY, "11:00", "12:20", "W 102", List.of("Prof. B")); // Overlaps nothing.
+        Section c1 = makeFullSection("30005", "1", "202519", "1", "CAMPUS PRINCIPAL", DayOfWeek.MONDAY, "09:00", "10:00", "SD 101", List.of("Prof. C")); // Overlaps a1 and a2.
+        Section c2 = makeFullSection("30006", "2", "202519", "1", "CAMPUS PRINCIPAL", DayOfWeek.MONDAY, "12:00", "13:00", "SD 102", List.of("Prof. C")); // Overlaps b2.
+        Section c3 = makeFullSection("30007", "3", "202519", "1", "CAMPUS PRINCIPAL", DayOfWeek.FRIDAY, "12:00", "13:00", "SD 103", List.of("Prof. C")); // Overlaps nothing.
+
+        ScheduleService scheduleService = new ScheduleService();
+
+        List<List<Section>> schedules = scheduleService.generateAllSchedules(
+            List.of(List.of(a1, a2), List.of(b1, b2), List.of(c1, c2, c3))
+        );
+
+        // Only b2 fits with any A section, and then only c3 fits with b2.
+        assert schedules.size() == 2 : "Expected 2 schedules, but got " +
+        schedules.size();
+        assert schedules.get(0).equals(List.of(a1, b2, c3)) : "First schedule should be a1, b2, c3.";
+        assert schedules.get(1).equals(List.of(a2, b2, c3)) : "Second schedule should be a2, b2, c3.";
+    }
+
+    // 11. Back-to-back meetings (end time of one equals start time of another)
+    @Test
+    void backToBackMeetings_shouldNotConflict() {
+        Section first = makeFullSection(
+            "20001",
+            "1",
+            "202519",
+            "1",
+            "CAMPUS PRINCIPAL",
+            DayOfWeek.MONDAY,
+            "10:00",
+            "11:00",
+            "ML 101",
+            List.of("Prof. A")
+        );
+        Section second = makeFullSection(
+            "20002",
+            "1",
+            "202519",
+            "1",
+            "CAMPUS PRINCIPAL",
+            DayOfWeek.MONDAY,
+            "11:00",
+            "12:00",
+            "ML 102",
+            List.of("Prof. B")
+        );
+
+        ScheduleService scheduleService = new ScheduleService();
+
+        List<List<Section>> schedules = scheduleService.generateAllSchedules(
+            List.of(List.of(first), List.of(second))
+        );
+
+        assert schedules.size() == 1 : "Expected 1 schedule for back-to-back meetings, but got " +
+        schedules.size(); // The end of one meeting equals the start of the other, so they do not overlap.
+    }
+
+    // Meetings that are not aligned to 5 minutes share a slot of the weekly bitmap, so they must be compared by their real times.
+    @Test
+    void meetingsSharingAPartialSlot_shouldOnlyConflictWhenTheyOverlap() {
+        Section early = makeFullSection(
+            "20003",
+            "1",
+            "202519",
+            "1",
+            "CAMPUS PRINCIPAL",
+            DayOfWeek.TUESDAY,
+            "09:00",
+            "10:52",
+            "ML 101",
+            List.of("Prof. A")
+        );
+        Section late = makeFullSection(
+            "20004",
+            "1",
+            "202519",
+            "1",
+            "CAMPUS PRINCIPAL",
+            DayOfWeek.TUESDAY,
+            "10:53",
+            "12:00",
+            "ML 102",
+            List.of("Prof. B")
+        );
+        Section overlapping = makeFullSection(
+            "20005",
+            "2",
+            "202519",
+            "1",
+            "CAMPUS PRINCIPAL",
+            DayOfWeek.TUESDAY,
+            "10:51",
+            "12:00",
+            "ML 103",
+            List.of("Prof. C")
+        );
+
+        ScheduleService scheduleService = new ScheduleService();
+
+        List<List<Section>> schedules = scheduleService.generateAllSchedules(
+            List.of(List.of(early), List.of(late, overlapping))
+        );
+
+        assert schedules.size() == 1 : "Expected 1 schedule, but got " +
+        schedules.size(); // 10:52 and 10:53 fall in the same 5-minute slot but do not overlap, 10:51 does.
+        assert schedules
+            .get(0)
+            .contains(late) : "The only schedule should contain the section starting at 10:53.";
+    }
+
+    // 10. Stress test with large input: 5+ courses, each with multiple sections
+    @Test
+    void forwardChecking_shouldReturnTheSameSchedulesAsBacktracking() {
+        List<List<Section>> candidates = randomCandidates(new Random(42), 6, 8);
+
+        ScheduleService scheduleService = new ScheduleService();
+
+        List<List<Section>> backtracking = scheduleService.generateAllSchedules(
+            candidates,
+            SearchMode.BACKTRACKING
+        );
+        List<List<Section>> forwardChecking = scheduleService.generateAllSchedules(
+            candidates,
+            SearchMode.FORWARD_CHECKING
+        );
+
+        assert !backtracking.isEmpty() : "The random input should have at least one valid schedule.";
+        assert forwardChecking.size() == backtracking.size() : "Expected " + backtracking.size() +
+        " schedules with forward checking, but got " + forwardChecking.size();
+        assert asSet(forwardChecking).equals(asSet(backtracking)) : "Both modes should return the same schedules.";
+    }
+
+    @Test
+    void parallelSearch_shouldReturnTheSameSchedulesInTheSameOrderAsBacktracking() {
+        List<List<Section>> candidates = randomCandidates(new Random(42), 6, 8); // 8^6 combinations, well above the sequential threshold.
+
+        ScheduleService scheduleService = new ScheduleService();
+
+        List<List<Section>> backtracking = scheduleService.generateAllSchedules(
+            candidates,
+            SearchMode.BACKTRACKING
+        );
+        List<List<Section>> parallel = scheduleService.generateAllSchedules(
+            candidates,
+            SearchMode.PARALLEL
+        );
+
+        assert parallel.equals(backtracking) : "The parallel search should return the same schedules in the same order.";
+    }
+
+    @Test
+    void rankedMode_shouldReturnEverySchedulePreferringFreeDaysThenFewerGaps() {
+        List<List<Section>> candidates = randomCandidates(new Random(42), 5, 8);
+
+        ScheduleService scheduleService = new ScheduleService();
+
+        List<List<Section>> backtracking = scheduleService.generateAllSchedules(candidates, SearchMode.BACKTRACKING);
+        ScheduleResult result = scheduleService.generateSchedules(candidates, SearchMode.RANKED, new SearchGuard(null, backtracking.size()));
+        List<List<Section>> ranked = result.getSchedules();
+
+        Comparator<List<Section>> bestFirst = Comparator.<List<Section>>comparingDouble(RankingCriterion.MOST_FREE_DAYS::score)
+            .thenComparingDouble(RankingCriterion.FEWEST_GAPS::score)
+            .thenComparingDouble(RankingCriterion.NO_EARLY_MORNINGS::score)
+            .reversed();
+        List<List<Section>> expected = new ArrayList<>(backtracking);
+        expected.sort(bestFirst); // Stable, so ties keep the backtracking order.
+
+        assert ranked.size() == backtracking.size() : "Expected " + backtracking.size() + " schedules, but got " + ranked.size();
+        assert ranked.equals(expected) : "The ranked mode should return every schedule, best first.";
+        assert result.isComplete() : "A cap equal to the number of schedules should still be complete.";
+    }
+
+    @Test
+    void rankedModeWithACap_shouldKeepOnlyTheBestSchedules() {
+        List<List<Section>> candidates = randomCandidates(new Random(42), 5, 8);
+
+        ScheduleService scheduleService = new ScheduleService();
+
+        List<List<Section>> all = scheduleService.generateSchedules(candidates, SearchMode.RANKED, new SearchGuard(null, 1_000_000)).getSchedules();
+        ScheduleResult capped = scheduleService.generateSchedules(candidates, SearchMode.RANKED, new SearchGuard(null, 10));
+
+        assert capped.getTruncationReason() == TruncationReason.RESULT_LIMIT : "The list should be truncated by the result cap.";
+        assert capped.getSchedules().equals(all.subList(0, 10)) : "The capped list should hold the ten best schedules.";
+    }
+
+    @Test
+    void rankedModeWithoutACap_shouldBeRejected() {
+        try {
+            new ScheduleService().generateAllSchedules(randomCandidates(new Random(42), 3, 4), SearchMode.RANKED);
+            assert false : "RANKED should not rank every schedule without a cap.";
+        } catch (IllegalArgumentException expected) {
+            // Expected, the ranked search only keeps as many schedules as the cap.
+        }
+    }
+
+    @Test
+    void rankedDefaultMode_shouldBeRejected() {
+        ScheduleService scheduleService = new ScheduleService();
+        try {
+            scheduleService.setDefaultMode(SearchMode.RANKED);
+            assert false : "RANKED should not be accepted as the default mode.";
+        } catch (IllegalStateException expected) {
+            // Expected, the application does not start with it.
+        }
+
+        scheduleService.setDefaultMode(SearchMode.FORWARD_CHECKING);
+        List<List<Section>> candidates = randomCandidates(new Random(42), 3, 4);
+        assert scheduleService.generateAllSchedules(candidates).equals(scheduleService.generateAllSchedules(candidates, SearchMode.FORWARD_CHECKING))
+            : "The configured default mode should be used.";
+    }
+
+    @Test
+    void countSchedules_shouldMatchTheNumberOfGeneratedSchedules() {
+        ScheduleService scheduleService = new ScheduleService();
+
+        for (int seed = 0; seed < 5; seed++) {
+            List<List<Section>> candidates = randomCandidates(new Random(seed), 6, 8);
+
+            long count = scheduleService.countSchedules(candidates);
+            int generated = scheduleService.generateAllSchedules(candidates).size();
+
+            assert count == generated : "Seed " + seed + ": expected " + generated + " schedules, but counted " + count;
+        }
+    }
+
+    @Test
+    void topSchedules_shouldMatchSortingEveryGeneratedSchedule() {
+        List<List<Section>> candidates = randomCandidates(new Random(3), 5, 8);
+        List<List<RankingCriterion>> criteriaToTry = List.of(
+            List.of(RankingCriterion.MOST_FREE_DAYS, RankingCriterion.FEWEST_GAPS),
+            List.of(RankingCriterion.MOST_AVAILABLE_SEATS),
+            List.of(RankingCriterion.NO_EARLY_MORNINGS, RankingCriterion.MOST_AVAILABLE_SEATS)
+        );
+
+        ScheduleService scheduleService = new ScheduleService();
+
+        List<List<Section>> all = scheduleService.generateAllSchedules(candidates);
+
+        for (List<RankingCriterion> criteria : criteriaToTry) {
+            // Brute force: sort every schedule by the criteria in priority order, the sort is stable so ties keep the search order.
+            Comparator<List<Section>> byCriteria = Comparator.comparingDouble(schedule -> -criteria.get(0).score(schedule));
+            for (RankingCriterion criterion : criteria.subList(1, criteria.size())) {
+                byCriteria = byCriteria.thenComparingDouble(schedule -> -criterion.score(schedule));
+            }
+            List<List<Section>> sorted = new ArrayList<>(all);
+            sorted.sort(byCriteria);
+
+            List<List<Section>> top = scheduleService.generateTopSchedules(candidates, 5, criteria);
+
+            assert top.equals(sorted.subList(0, 5)) : "The top 5 schedules for " + criteria + " should match the brute force ranking.";
+        }
+    }
+
+    @Test
+    void resultCap_shouldTruncateWithTheFirstSchedules() {
+        List<List<Section>> candidates = randomCandidates(new Random(42), 6, 8);
+
+        ScheduleService scheduleService = new ScheduleService();
+
+        List<List<Section>> all = scheduleService.generateAllSchedules(candidates);
+        ScheduleResult capped = scheduleService.generateSchedules(candidates, SearchMode.BACKTRACKING, new SearchGuard(null, 10));
+        ScheduleResult exact = scheduleService.generateSchedules(candidates, SearchMode.BACKTRACKING, new SearchGuard(null, all.size()));
+
+        assert !capped.isComplete() : "Ten schedules out of " + all.size() + " should not be complete.";
+        assert capped.getTruncationReason() == TruncationReason.RESULT_LIMIT : "The list should be truncated by the result cap.";
+        assert capped.getSchedules().equals(all.subList(0, 10)) : "The capped list should hold the first ten schedules.";
+        assert exact.isComplete() : "A cap equal to the number of schedules should still be complete.";
+    }
+
+    @Test
+    void resultCapInParallel_shouldStopTheTasksWithoutExploringEverything() {
+        List<List<Section>> candidates = randomCandidates(new Random(42), 9, 10); // Far too many combinations to explore in a test.
+
+        ScheduleService scheduleService = new ScheduleService();
+
+        ScheduleResult sequential = scheduleService.generateSchedules(candidates, SearchMode.BACKTRACKING, new SearchGuard(null, 10));
+        ScheduleResult parallel = scheduleService.generateSchedules(candidates, SearchMode.PARALLEL, new SearchGuard(Duration.ofMinutes(1), 10));
+
+        assert parallel.getTruncationReason() == TruncationReason.RESULT_LIMIT : "The parallel search should stop on the result cap, but got " +
+        parallel.getTruncationReason();
+        assert parallel.getSchedules().equals(sequential.getSchedules()) : "The capped parallel list should hold the same first ten schedules.";
+    }
+
+    @Test
+    void exhaustedTimeBudget_shouldStopTheSearch() {
+        List<List<Section>> candidates = randomCandidates(new Random(42), 9, 10); // Far too many combinations to finish instantly.
+
+        ScheduleService scheduleService = new ScheduleService();
+
+        for (SearchMode mode : SearchMode.values()) {
+            ScheduleResult result = scheduleService.generateSchedules(candidates, mode, new SearchGuard(Duration.ZERO, 1_000_000_000L)); // RANKED only runs with a cap.
+
+            assert result.getTruncationReason() == TruncationReason.DEADLINE : mode + ": the search should stop on the deadline, but got " +
+            result.getTruncationReason();
+        }
+    }
+
+    @Test
+    void cancelledGuard_shouldNotReturnSchedules() {
+        List<List<Section>> candidates = randomCandidates(new Random(42), 6, 8);
+        SearchGuard guard = SearchGuard.unlimited();
+        guard.cancel();
+
+        ScheduleService scheduleService = new ScheduleService();
+
+        ScheduleResult result = scheduleService.generateSchedules(candidates, SearchMode.BACKTRACKING, guard);
+
+        assert result.getSchedules().isEmpty() : "A cancelled search should not return schedules.";
+        assert result.getTruncationReason() == TruncationReason.CANCELLED : "The result should be marked as cancelled.";
+    }
+
+    @Test
+    void pagesFollowedByCursor_shouldReturnEveryScheduleOnceInOrder() {
+        List<List<Section>> candidates = randomCandidates(new Random(7), 5, 6);
+
+        ScheduleService scheduleService = new ScheduleService();
+
+        List<List<Section>> all = scheduleService.generateAllSchedules(candidates);
+
+        List<List<Section>> paged = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            SchedulePage page = scheduleService.generateSchedulePage(candidates, 7, cursor);
+            assert page.getSchedules().size() <= 7 : "A page should never exceed the limit.";
+            paged.addAll(page.getSchedules());
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assert all.size() > 7 : "The random input should need more than one page.";
+        assert pages == (all.size() + 6) / 7 : "Expected " + ((all.size() + 6) / 7) + " pages, but got " + pages;
+        assert paged.equals(all) : "Concatenated pages should equal the full list of schedules, in the same order.";
+    }
+
+    @Test
+    void pagesCutShortByTheGuard_shouldResumeRightAfterTheirLastSchedule() {
+        List<List<Section>> candidates = randomCandidates(new Random(11), 5, 12); // Many sections share their times, so pages stop inside groups.
+
+        ScheduleService scheduleService = new ScheduleService();
+
+        List<List<Section>> all = scheduleService.generateAllSchedules(candidates);
+
+        List<List<Section>> paged = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        int truncated = 0;
+        do {
+            SchedulePage page = scheduleService.generateSchedulePage(candidates, ScheduleConstraints.none(), 1000, cursor, new TrippingGuard(40));
+            if (!page.isComplete()) {
+                truncated++;
+            }
+            paged.addAll(page.getSchedules());
+            cursor = page.getNextCursor();
+            assert paged.size() <= all.size() && ++pages < 10_000 : "The pages should move forward without repeating schedules.";
+        } while (cursor != null);
+
+        assert truncated > 0 : "The guard should have cut some pages short.";
+        assert paged.equals(all) : "Pages cut short should still add up to every schedule, in order.";
+    }
+
+    @Test
+    void stoppedCount_shouldBeReportedAsTruncated() {
+        List<List<Section>> candidates = randomCandidates(new Random(42), 6, 8);
+        SearchGuard guard = SearchGuard.unlimited();
+        guard.cancel();
+
+        long count = new ScheduleService().countSchedules(candidates, ScheduleConstraints.none(), guard);
+
+        assert count == 0 : "A cancelled count should not count anything, but got " + count;
+        assert guard.getTruncationReason() == TruncationReason.CANCELLED : "The count should be marked as cancelled.";
+    }
+
+    // Guard that cancels the search after a given number of nodes, whatever the time it took.
+    private static final class TrippingGuard extends SearchGuard {
+
+        private int nodesLeft;
+
+        TrippingGuard(int nodes) {
+            super(null, Long.MAX_VALUE);
+            this.nodesLeft = nodes;
+        }
+
+        @Override
+        boolean checkpoint() {
+            if (--nodesLeft < 0) {
+                cancel();
+            }
+            return super.checkpoint();
+        }
+    }
+
+    @Test
+    void cursorForDifferentCourses_shouldBeRejected() {
+        List<List<Section>> candidates = randomCandidates(new Random(7), 5, 6);
+
+        ScheduleService scheduleService = new ScheduleService();
+
+        String cursor = scheduleService.generateSchedulePage(candidates, 1, null).getNextCursor();
+
+        try {
+            scheduleService.generateSchedulePage(candidates.subList(0, 4), 1, cursor);
+            assert false : "A cursor for 5 courses should not be accepted for 4 courses.";
+        } catch (IllegalArgumentException expected) {
+            // Expected, the cursor describes a position of another request.
+        }
+    }
+
+    @Test
+    void sectionsWithTheSameMeetingTimes_shouldBeExpandedIntoEverySchedule() {
+        List<List<Section>> candidates = randomCandidates(new Random(11), 5, 12); // 12 sections over 18 weekly patterns, so many share their times.
+
+        ScheduleService scheduleService = new ScheduleService();
+
+        // Reference: one search branch per section, without collapsing the equivalent ones.
+        CompiledCandidates ungrouped = CompiledCandidates.compile(candidates, false, SectionFilter.none());
+        List<List<Section>> reference = new ArrayList<>();
+        ScheduleService.backtrack(ungrouped, 0, new int[candidates.size()], null, SearchGuard.unlimited(), chosen -> reference.add(ungrouped.schedule(chosen)));
+
+        assert CompiledCandidates.compile(candidates).groupCount() < ungrouped.groupCount() : "The random input should have equivalent sections.";
+        for (SearchMode mode : SearchMode.values()) {
+            List<List<Section>> schedules = scheduleService.generateSchedules(candidates, mode, new SearchGuard(null, reference.size())).getSchedules();
+
+            assert schedules.size() == reference.size() : mode + ": expected " + reference.size() + " schedules, but got " + schedules.size();
+            assert asSet(schedules).equals(asSet(reference)) : mode + ": every combination of equivalent sections should be returned.";
+        }
+        assert scheduleService.countSchedules(candidates) == reference.size() : "The count should include every equivalent section.";
+    }
+
+    @Test
+    void groupedSchedules_shouldListTheInterchangeableSectionsOfEachCourse() {
+        List<List<Section>> candidates = randomCandidates(new Random(11), 5, 12);
+
+        ScheduleService scheduleService = new ScheduleService();
+
+        GroupedScheduleResult grouped = scheduleService.generateGroupedSchedules(candidates, ScheduleConstraints.none(), SearchMode.BACKTRACKING, SearchGuard.unlimited());
+
+        long expanded = 0;
+        for (List<List<Section>> schedule : grouped.getSchedules()) {
+            long combinations = 1;
+            for (List<Section> alternatives : schedule) {
+                for (Section section : alternatives) {
+                    assert meetingTimes(section).equals(meetingTimes(alternatives.get(0))) : "Grouped sections should meet at the same times.";
+                }
+                combinations *= alternatives.size();
+            }
+            expanded += combinations;
+        }
+
+        assert grouped.isComplete() : "An unlimited search should be complete.";
+        assert grouped.getSchedules().size() < expanded : "Grouping should return fewer schedules than the expanded list.";
+        assert expanded == scheduleService.countSchedules(candidates) : "The grouped schedules should expand to every valid schedule.";
+    }
+
+    @Test
+    void packedMeetings_shouldConflictExactlyLikeTheMeetings() {
+        Random random = new Random(5);
+        DayOfWeek[] days = { DayOfWeek.MONDAY, DayOfWeek.TUESDAY, DayOfWeek.SUNDAY };
+
+        for (int i = 0; i < 20_000; i++) {
+            Section[] pair = new Section[2];
+            for (int p = 0; p < 2; p++) {
+                List<Meeting> meetings = new ArrayList<>();
+                for (int m = random.nextInt(4); m >= 0; m--) {
+                    // Any minute of the day, so some meetings are empty, inverted or end at midnight's last minute.
+                    LocalTime start = LocalTime.of(random.nextInt(24), random.nextInt(60));
+                    LocalTime end = random.nextInt(10) == 0 ? start : start.plusMinutes(random.nextInt(180) - 20);
+                    meetings.add(new Meeting(days[random.nextInt(days.length)], start, end, "ML 101"));
+                }
+                pair[p] = new Section("1", "1", "202519", "1", "CAMPUS PRINCIPAL", meetings, List.of("Prof."), 0, 30);
+            }
+
+            int[] a = PackedMeetings.pack(pair[0]);
+            int[] b = PackedMeetings.pack(pair[1]);
+            boolean expected = ScheduleService.conflict(pair[0], pair[1]);
+
+            assert PackedMeetings.overlap(a, 0, a.length, b, 0, b.length) == expected : "Pair " + i + ": the packed check should give " + expected;
+            assert PackedMeetings.overlap(b, 0, b.length, a, 0, a.length) == expected : "Pair " + i + ": the packed check should be symmetric";
+        }
+    }
+
+    @Test
+    void constraints_shouldMatchFilteringTheSchedulesAfterwards() {
+        List<List<Section>> candidates = randomCandidates(new Random(13), 5, 10);
+        ScheduleConstraints constraints = new ScheduleConstraints(
+            LocalTime.of(9, 30),
+            LocalTime.of(16, 0),
+            List.of(DayOfWeek.FRIDAY),
+            List.of("campus principal"),
+            true,
+            List.of("TUESDAY 12:00-14:00")
+        );
+
+        ScheduleService scheduleService = new ScheduleService();
+
+        // Reference: every schedule, keeping only those whose sections all satisfy the constraints.
+        List<List<Section>> expected = new ArrayList<>();
+        for (List<Section> schedule : scheduleService.generateAllSchedules(candidates)) {
+            boolean allowed = true;
+            for (Section section : schedule) {
+                allowed &= section.getAvailableSeats() > 0;
+                for (Meeting meeting : section.getMeetings()) {
+                    allowed &= !meeting.getStart().isBefore(LocalTime.of(9, 30)) && !meeting.getEnd().isAfter(LocalTime.of(16, 0));
+                    allowed &= meeting.getDay() != DayOfWeek.FRIDAY;
+                    allowed &= !(meeting.getDay() == DayOfWeek.TUESDAY && meeting.getStart().isBefore(LocalTime.of(14, 0)) && meeting.getEnd().isAfter(LocalTime.of(12, 0)));
+                }
+            }
+            if (allowed) {
+                expected.add(schedule);
+            }
+        }
+
+        for (SearchMode mode : SearchMode.values()) {
+            List<List<Section>> schedules = scheduleService.generateSchedules(candidates, constraints, mode, new SearchGuard(null, 1_000_000)).getSchedules(); // RANKED only runs with a cap.
+
+            assert schedules.size() == expected.size() : mode + ": expected " + expected.size() + " schedules, but got " + schedules.size();
+            assert asSet(schedules).equals(asSet(expected)) : mode + ": the constraints should keep exactly the allowed schedules.";
+        }
+        assert !expected.isEmpty() : "The constraints should leave some schedules.";
+        assert scheduleService.countSchedules(candidates, constraints) == expected.size() : "The count should apply the constraints too.";
+    }
+
+    @Test
+    void malformedBlockedWindow_shouldBeRejected() {
+        ScheduleConstraints constraints = new ScheduleConstraints(null, null, null, null, false, List.of("MONDAY noon"));
+
+        try {
+            new ScheduleService().countSchedules(randomCandidates(new Random(1), 2, 2), constraints);
+            assert false : "A blocked window without times should not be accepted.";
+        } catch (IllegalArgumentException expected) {
+            // Expected, the window cannot be parsed.
+        }
+    }
+
+    // Helper method to create courses whose sections meet on random days at the usual Uniandes time blocks.
+
+    static List<List<Section>> randomCandidates(Random random, int courses, int sectionsPerCourse) {
+        String[][] blocks = {
+            { "08:00", "09:20" },
+            { "09:30", "10:50" },
+            { "11:00", "12:20" },
+            { "12:30", "13:50" },
+            { "14:00", "15:20" },
+            { "15:30", "16:50" },
+        };
+        DayOfWeek[] days = { DayOfWeek.MONDAY, DayOfWeek.TUESDAY, DayOfWeek.WEDNESDAY, DayOfWeek.THURSDAY, DayOfWeek.FRIDAY };
+
+        List<List<Section>> candidates = new ArrayList<>();
+        for (int c = 0; c < courses; c++) {
+            List<Section> sections = new ArrayList<>();
+            for (int s = 0; s < sectionsPerCourse; s++) {
+                String[] block = blocks[random.nextInt(blocks.length)];
+                int firstDay = random.nextInt(3);
+                List<Meeting> meetings = List.of(
+                    new Meeting(days[firstDay], LocalTime.parse(block[0]), LocalTime.parse(block[1]), "ML 101"),
+                    new Meeting(days[firstDay + 2], LocalTime.parse(block[0]), LocalTime.parse(block[1]), "ML 101")
+                ); // Two meetings per week, e.g. Monday and Wednesday at the same time.
+                sections.add(new Section(
+                    String.valueOf(10000 + c * 100 + s),
+                    String.valueOf(s + 1),
+                    "202519",
+                    "1",
+                    "CAMPUS PRINCIPAL",
+                    meetings,
+                    List.of("Prof. " + c),
+                    random.nextInt(30),
+                    30
+                ));
+            }
+            candidates.add(sections);
+        }
+        return candidates;
+    }
+
+    // Meeting times of a section as text, e.g. "MONDAY 08:00-09:20".
+
+    static List<String> meetingTimes(Section section) {
+        List<String> times = new ArrayList<>();
+        for (Meeting meeting : section.getMeetings()) {
+            times.add(meeting.getDay() + " " + meeting.getStart() + "-" + meeting.getEnd());
+        }
+        return times;
+    }
+
+    // Schedules compared by identity of their sections, regardless of the order in which they were found.
+
+    static Set<List<Section>> asSet(List<List<Section>> schedules) {
+        return new HashSet<>(schedules);
+    }
+
     // 2. Multiple courses with multiple sections (some overlap, some valid)
 }
@@ -0,0 +1,214 @@
+package com.cmolina12.senehorario_backend.service;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.cmolina12.senehorario_backend.domain.Meeting;
+import com.cmolina12.senehorario_backend.domain.SeatUpdate;
+import com.cmolina12.senehorario_backend.domain.Section;
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+class SeatWatchServiceTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+    // Stream that keeps the updates sent to it instead of writing them to a response.
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final List<List<SeatUpdate>> events = new ArrayList<>();
+        private boolean gone; // The client disconnected, sending fails.
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void send(SseEventBuilder builder) throws IOException {
+            if (gone) {
+                throw new IOException("Broken pipe");
+            }
+            Set<ResponseBodyEmitter.DataWithMediaType> parts = builder.build();
+            for (ResponseBodyEmitter.DataWithMediaType part : parts) {
+                if (part.getData() instanceof List<?> updates) {
+                    events.add((List<SeatUpdate>) updates);
+                }
+            }
+        }
+    }
+
+    private static Section section(String nrc, int availableSeats) {
+        Meeting meeting = new Meeting(DayOfWeek.MONDAY, LocalTime.of(9, 0), LocalTime.of(10, 20), "ML 101");
+        return new Section(nrc, "1", "202519", "1", "CAMPUS PRINCIPAL", List.of(meeting), List.of("JUAN PEREZ"), availableSeats, 30);
+    }
+
+    private SeatWatchService seatWatch(CourseService courseService) {
+        SeatWatchService seatWatchService = new SeatWatchService();
+        ReflectionTestUtils.setField(seatWatchService, "courseService", courseService);
+        ReflectionTestUtils.setField(seatWatchService, "courseFetchExecutor", executor);
+        return seatWatchService;
+    }
+
+    @Test
+    void watchedSections_shouldOnlyBeSentWhenTheirSeatsChange() {
+        CourseService courseService = mock(CourseService.class);
+        when(courseService.findSectionsByCourseCodes(List.of("ISIS1204"))).thenReturn(List.of(List.of(section("20001", 5), section("20002", 3)))); // Seats of the snapshot, minutes old.
+        when(courseService.fetchLatestSections("ISIS1204"))
+            .thenReturn(List.of(section("20001", 0), section("20002", 3))) // Current seats, when the stream opens.
+            .thenReturn(List.of(section("20001", 0), section("20002", 3))) // Nothing changed.
+            .thenReturn(List.of(section("20001", 2), section("20002", 1))); // A seat opened up in the watched section.
+        SeatWatchService seatWatchService = seatWatch(courseService);
+        RecordingEmitter emitter = new RecordingEmitter();
+
+        seatWatchService.register(emitter, List.of(" isis1204 "), List.of("20001"));
+        seatWatchService.pollSeats();
+        seatWatchService.pollSeats();
+
+        assert emitter.events.size() == 2 : "Expected the current seats and one change, but got " + emitter.events.size() + " events.";
+        SeatUpdate first = emitter.events.get(0).get(0);
+        assert emitter.events.get(0).size() == 1 && first.getNrc().equals("20001") && first.getPreviousSeats() == null && first.getAvailableSeats() == 0
+            : "The first event should have the seats of the API for the watched section only, not the ones of the snapshot.";
+        SeatUpdate change = emitter.events.get(1).get(0);
+        assert emitter.events.get(1).size() == 1 && change.getPreviousSeats() == 0 && change.getAvailableSeats() == 2 && change.getCode().equals("ISIS1204")
+            : "The change should carry the seats before and after, and only for the watched NRC.";
+    }
+
+    @Test
+    void courseWatchedByManyStreams_shouldBeFetchedOncePerPoll() {
+        CourseService courseService = mock(CourseService.class);
+        when(courseService.findSectionsByCourseCodes(anyList())).thenReturn(List.of(List.of(section("20001", 0))));
+        when(courseService.fetchLatestSections("ISIS1204")).thenReturn(List.of(section("20001", 0)));
+        SeatWatchService seatWatchService = seatWatch(courseService);
+
+        List<RecordingEmitter> emitters = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            RecordingEmitter emitter = new RecordingEmitter();
+            seatWatchService.register(emitter, List.of("ISIS1204"), null);
+            emitters.add(emitter);
+        }
+        clearInvocations(courseService); // Each stream fetched its current seats when it opened.
+        when(courseService.fetchLatestSections("ISIS1204")).thenReturn(List.of(section("20001", 1)));
+        seatWatchService.pollSeats();
+
+        verify(courseService, times(1)).fetchLatestSections("ISIS1204");
+        assert emitters.stream().allMatch(emitter -> emitter.events.size() == 2) : "Every stream should get the change.";
+    }
+
+    @Test
+    void disconnectedStream_shouldStopBeingPolled() {
+        CourseService courseService = mock(CourseService.class);
+        when(courseService.findSectionsByCourseCodes(anyList())).thenReturn(List.of(List.of(section("20001", 0))));
+        when(courseService.fetchLatestSections("ISIS1204"))
+            .thenReturn(List.of(section("20001", 0)))
+            .thenReturn(List.of(section("20001", 1)))
+            .thenReturn(List.of(section("20001", 2)));
+        SeatWatchService seatWatchService = seatWatch(courseService);
+        RecordingEmitter emitter = new RecordingEmitter();
+
+        seatWatchService.register(emitter, List.of("ISIS1204"), null);
+        clearInvocations(courseService);
+        emitter.gone = true;
+        seatWatchService.pollSeats(); // Sending the change fails.
+        seatWatchService.pollSeats();
+
+        assert seatWatchService.watchCount() == 0 : "The stream should have been dropped.";
+        verify(courseService, times(1)).fetchLatestSections("ISIS1204"); // Nobody watches anymore.
+    }
+
+    @Test
+    void unknownNrcOrTooManyCourses_shouldBeRejected() {
+        CourseService courseService = mock(CourseService.class);
+        when(courseService.findSectionsByCourseCodes(anyList())).thenReturn(List.of(List.of(section("20001", 0))));
+        SeatWatchService seatWatchService = seatWatch(courseService);
+
+        try {
+            seatWatchService.register(new RecordingEmitter(), List.of("ISIS1204"), List.of("99999"));
+            assert false : "An NRC outside the watched courses should be rejected.";
+        } catch (InvalidRequestException e) {
+            assert e.getMessage().contains("99999") : "The message should name the NRC, but was: " + e.getMessage();
+        }
+
+        List<String> codes = new ArrayList<>();
+        for (int i = 0; i <= SeatWatchService.MAX_WATCHED_COURSES; i++) {
+            codes.add("ISIS" + (1000 + i));
+        }
+        try {
+            seatWatchService.register(new RecordingEmitter(), codes, null);
+            assert false : "Too many courses should be rejected.";
+        } catch (InvalidRequestException e) {
+            // Expected.
+        }
+
+        assert seatWatchService.watchCount() == 0 : "Rejected streams should not be watched.";
+        seatWatchService.pollSeats();
+        verify(courseService, never()).fetchLatestSections("ISIS1204");
+    }
+
+    @Test
+    void apiDownWhenTheStreamOpens_shouldStartWithTheSeatsOfTheCatalog() {
+        CourseService courseService = mock(CourseService.class);
+        when(courseService.findSectionsByCourseCodes(anyList())).thenReturn(List.of(List.of(section("20001", 4))));
+        when(courseService.fetchLatestSections("ISIS1204"))
+            .thenThrow(new ResourceAccessException("Circuit open"))
+            .thenReturn(List.of(section("20001", 0)));
+        SeatWatchService seatWatchService = seatWatch(courseService);
+        RecordingEmitter emitter = new RecordingEmitter();
+
+        seatWatchService.register(emitter, List.of("ISIS1204"), null);
+        seatWatchService.pollSeats();
+
+        assert emitter.events.size() == 2 : "Expected the known seats and the correction, but got " + emitter.events.size() + " events.";
+        assert emitter.events.get(0).get(0).getAvailableSeats() == 4 : "The stream should start with the seats the catalog knows.";
+        assert emitter.events.get(1).get(0).getAvailableSeats() == 0 : "The next poll should correct them.";
+    }
+
+    @Test
+    void slowApi_shouldNotHoldThePollPastTheFetchTimeout() throws Exception {
+        CourseService courseService = mock(CourseService.class);
+        CountDownLatch release = new CountDownLatch(1);
+        when(courseService.findSectionsByCourseCodes(anyList())).thenReturn(List.of(List.of(section("20001", 0))));
+        when(courseService.fetchLatestSections("ISIS1204"))
+            .thenReturn(List.of(section("20001", 0)))
+            .thenAnswer(invocation -> {
+                if (!release.await(5, TimeUnit.SECONDS)) { // The API never answers during the test.
+                    throw new IllegalStateException("Not released");
+                }
+                return List.of(section("20001", 3));
+            });
+        SeatWatchService seatWatchService = seatWatch(courseService);
+        ReflectionTestUtils.setField(seatWatchService, "fetchTimeout", Duration.ofMillis(100));
+        RecordingEmitter emitter = new RecordingEmitter();
+        seatWatchService.register(emitter, List.of("ISIS1204"), null);
+
+        long start = System.nanoTime();
+        seatWatchService.pollSeats();
+        long elapsed = Duration.ofNanos(System.nanoTime() - start).toMillis();
+        release.countDown();
+
+        assert elapsed < 2000 : "The poll should give up on the course after the fetch timeout, but took " + elapsed + " ms.";
+        assert emitter.events.size() == 1 : "Nothing should be sent for a course that did not answer in time.";
+        assert seatWatchService.watchCount() == 1 : "The stream should stay open for the next poll.";
+    }
+}